@@ -0,0 +1,96 @@
+/**
+ *
+ */
+package one.tracking.framework.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import one.tracking.framework.filter.AuthenticationCache;
+import one.tracking.framework.filter.BearerAuthenticationFilter;
+import one.tracking.framework.support.JWTHelper;
+
+/**
+ * Compares the {@link BearerAuthenticationFilter} verifying the token on each request with the
+ * filter using the {@link AuthenticationCache}.
+ *
+ * @author Marko Voß
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BearerAuthenticationFilterBenchmark {
+
+  private static final byte[] SECRET = "benchmark-secret-benchmark-secret-benchmark-secret".getBytes(StandardCharsets.UTF_8);
+
+  @Param({"false", "true"})
+  private boolean cached;
+
+  private BearerAuthenticationFilter filter;
+
+  private String header;
+
+  @Setup
+  public void setup() {
+
+    final JWTHelper jwtHelper = new JWTHelper() {
+
+      @Override
+      public Claims decodeJWT(final String jwt) {
+        return Jwts.parser().setSigningKey(SECRET).parseClaimsJws(jwt).getBody();
+      }
+    };
+
+    this.header = "Bearer " + Jwts.builder()
+        .setSubject("user")
+        .claim("scopes", Collections.singletonList("USER"))
+        .setIssuedAt(new Date())
+        .setExpiration(Date.from(Instant.now().plus(Duration.ofDays(1))))
+        .signWith(SignatureAlgorithm.HS256, SECRET)
+        .compact();
+
+    this.filter = new BearerAuthenticationFilter(authentication -> authentication, jwtHelper, userId -> true,
+        this.cached ? new AuthenticationCache(10000, Duration.ofHours(1)) : null);
+  }
+
+  @Benchmark
+  public Authentication filter() throws Exception {
+
+    // A filter is applied only once per request instance
+    final MockHttpServletRequest request = new MockHttpServletRequest();
+    request.addHeader(HttpHeaders.AUTHORIZATION, this.header);
+
+    this.filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+    final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    SecurityContextHolder.clearContext();
+    return authentication;
+  }
+}
@@ -0,0 +1,230 @@
+/**
+ *
+ */
+package one.tracking.framework.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import one.tracking.framework.dto.DtoMapper;
+import one.tracking.framework.dto.meta.SurveyDto;
+import one.tracking.framework.entity.meta.Answer;
+import one.tracking.framework.entity.meta.ReleaseStatusType;
+import one.tracking.framework.entity.meta.Survey;
+import one.tracking.framework.entity.meta.container.BooleanContainer;
+import one.tracking.framework.entity.meta.container.ChoiceContainer;
+import one.tracking.framework.entity.meta.question.BooleanQuestion;
+import one.tracking.framework.entity.meta.question.ChecklistEntry;
+import one.tracking.framework.entity.meta.question.ChecklistQuestion;
+import one.tracking.framework.entity.meta.question.ChoiceQuestion;
+import one.tracking.framework.entity.meta.question.NumberQuestion;
+import one.tracking.framework.entity.meta.question.Question;
+import one.tracking.framework.entity.meta.question.RangeQuestion;
+import one.tracking.framework.entity.meta.question.TextQuestion;
+
+/**
+ * Compares the table driven {@link DtoMapper} with the builder based mapping, which has been used
+ * before. The allocation per mapped survey is reported as <code>gc.alloc.rate.norm</code> by the
+ * <code>gc</code> profiler.
+ *
+ * @author Marko Voß
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DtoMapperBenchmark {
+
+  private static final int CHILDREN = 9;
+
+  @Param({"500"})
+  private int size;
+
+  private Survey survey;
+
+  private long nextId;
+
+  @Setup
+  public void setup() {
+    this.nextId = 1;
+    this.survey = createMixedSurvey(this.size);
+  }
+
+  @Benchmark
+  public SurveyDto builderMapping() {
+    return LegacyDtoMapper.map(this.survey);
+  }
+
+  @Benchmark
+  public SurveyDto tableMapping() {
+    return DtoMapper.map(this.survey);
+  }
+
+  /**
+   * Creates a released survey of the specified number of questions. Every tenth question is a top
+   * level boolean or choice question, which contains the nine following questions of all types as
+   * sub questions.
+   */
+  private Survey createMixedSurvey(final int size) {
+
+    final List<Question> topLevel = new ArrayList<>(size / (CHILDREN + 1) + 1);
+
+    for (int i = 0; i < size; i += CHILDREN + 1) {
+
+      final List<Question> children = new ArrayList<>(CHILDREN);
+      for (int j = 0; j < CHILDREN && i + j + 1 < size; j++) {
+        children.add(createQuestion(j, j));
+      }
+
+      topLevel.add(createParent(topLevel.size(), children));
+    }
+
+    return Survey.builder()
+        .id(this.nextId++)
+        .questions(topLevel)
+        .nameId("BENCHMARK")
+        .title("TITLE")
+        .description("DESCRIPTION")
+        .version(0)
+        .releaseStatus(ReleaseStatusType.RELEASED)
+        .build();
+  }
+
+  private Question createParent(final int ranking, final List<Question> children) {
+
+    if (ranking % 2 == 0) {
+
+      final BooleanQuestion parent = BooleanQuestion.builder()
+          .id(this.nextId++)
+          .question("Q" + ranking)
+          .ranking(ranking)
+          .optional(false)
+          .build();
+
+      if (!children.isEmpty())
+        parent.setContainer(BooleanContainer.builder()
+            .questions(children)
+            .dependsOn(true)
+            .parent(parent)
+            .build());
+
+      return parent;
+    }
+
+    final List<Answer> answers = createAnswers(4);
+    final ChoiceQuestion parent = ChoiceQuestion.builder()
+        .id(this.nextId++)
+        .question("Q" + ranking)
+        .ranking(ranking)
+        .optional(false)
+        .answers(answers)
+        .multiple(false)
+        .build();
+
+    if (!children.isEmpty())
+      parent.setContainer(ChoiceContainer.builder()
+          .questions(children)
+          .dependsOn(answers.subList(0, 2))
+          .parent(parent)
+          .build());
+
+    return parent;
+  }
+
+  private Question createQuestion(final int type, final int ranking) {
+
+    switch (type % 6) {
+      case 0:
+        return BooleanQuestion.builder()
+            .id(this.nextId++)
+            .question("Boolean question")
+            .ranking(ranking)
+            .optional(true)
+            .build();
+      case 1:
+        return ChoiceQuestion.builder()
+            .id(this.nextId++)
+            .question("Choice question")
+            .ranking(ranking)
+            .optional(true)
+            .answers(createAnswers(5))
+            .multiple(true)
+            .build();
+      case 2:
+        return RangeQuestion.builder()
+            .id(this.nextId++)
+            .question("Range question")
+            .ranking(ranking)
+            .optional(true)
+            .minValue(0)
+            .maxValue(10)
+            .defaultAnswer(5)
+            .minText("MIN")
+            .maxText("MAX")
+            .build();
+      case 3:
+        return NumberQuestion.builder()
+            .id(this.nextId++)
+            .question("Number question")
+            .ranking(ranking)
+            .optional(true)
+            .minValue(0)
+            .maxValue(100)
+            .build();
+      case 4:
+        return TextQuestion.builder()
+            .id(this.nextId++)
+            .question("Text question")
+            .ranking(ranking)
+            .optional(true)
+            .multiline(true)
+            .length(256)
+            .build();
+      default:
+        return ChecklistQuestion.builder()
+            .id(this.nextId++)
+            .question("Checklist question")
+            .ranking(ranking)
+            .optional(true)
+            .entries(Arrays.asList(createEntry(0), createEntry(1), createEntry(2)))
+            .build();
+    }
+  }
+
+  private ChecklistEntry createEntry(final int ranking) {
+
+    return ChecklistEntry.builder()
+        .id(this.nextId++)
+        .question("Entry " + ranking)
+        .ranking(ranking)
+        .optional(true)
+        .build();
+  }
+
+  private List<Answer> createAnswers(final int count) {
+
+    final List<Answer> answers = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      answers.add(Answer.builder()
+          .id(this.nextId++)
+          .value("Answer " + i)
+          .build());
+    }
+    return answers;
+  }
+}
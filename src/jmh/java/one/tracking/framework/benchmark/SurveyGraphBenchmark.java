@@ -0,0 +1,173 @@
+/**
+ *
+ */
+package one.tracking.framework.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import one.tracking.framework.domain.SurveyGraph;
+import one.tracking.framework.entity.meta.ReleaseStatusType;
+import one.tracking.framework.entity.meta.Survey;
+import one.tracking.framework.entity.meta.container.BooleanContainer;
+import one.tracking.framework.entity.meta.question.BooleanQuestion;
+import one.tracking.framework.entity.meta.question.Question;
+
+/**
+ * Compares the question lookup of the {@link SurveyGraph} with the recursive search through the
+ * survey tree, which has been used before.
+ *
+ * @author Marko Voß
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SurveyGraphBenchmark {
+
+  @Param({"50", "500", "5000"})
+  private int size;
+
+  private Survey survey;
+
+  private SurveyGraph graph;
+
+  private long[] questionIds;
+
+  private int cursor;
+
+  @Setup
+  public void setup() {
+
+    this.survey = Surveys.createNestedSurvey(this.size);
+    this.graph = SurveyGraph.compile(this.survey);
+
+    final List<Long> ids = new ArrayList<>(this.size);
+    for (long id = 1; id <= this.size; id++)
+      ids.add(id);
+
+    Collections.shuffle(ids, new Random(42));
+    this.questionIds = ids.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  @Benchmark
+  public Question recursiveLookup() {
+    return getQuestion(this.survey.getQuestions(), nextQuestionId());
+  }
+
+  @Benchmark
+  public Question graphLookup() {
+    return this.graph.getQuestion(this.graph.indexOf(nextQuestionId()));
+  }
+
+  private Long nextQuestionId() {
+
+    final long id = this.questionIds[this.cursor];
+    this.cursor = (this.cursor + 1) % this.questionIds.length;
+    return id;
+  }
+
+  /*
+   * Previous implementation of SurveyResponseService.getQuestion
+   */
+  private static Question getQuestion(final List<Question> questions, final Long questionId) {
+
+    if (questions == null || questions.isEmpty() || questionId == null)
+      return null;
+
+    for (final Question question : questions) {
+
+      if (questionId.equals(question.getId()))
+        return question;
+
+      final List<Question> subQuestions = question.getSubQuestions();
+      if (subQuestions == null || subQuestions.isEmpty())
+        continue;
+
+      final Question result = getQuestion(subQuestions, questionId);
+      if (result != null)
+        return result;
+    }
+
+    return null;
+  }
+
+  /**
+   * Factory for detached survey trees used by the benchmarks.
+   */
+  static final class Surveys {
+
+    private static final int TOP_LEVEL = 10;
+
+    private static final int FAN_OUT = 4;
+
+    private Surveys() {}
+
+    /**
+     * Creates a released survey of boolean questions with ids from 1 to the specified size. The first
+     * ten questions are top level questions. All further questions are distributed breadth-first as
+     * sub questions with up to four sub questions per question.
+     *
+     * @param size the total number of questions
+     * @return the {@link Survey}
+     */
+    static Survey createNestedSurvey(final int size) {
+
+      final int topLevel = Math.min(size, TOP_LEVEL);
+      final List<BooleanQuestion> questions = new ArrayList<>(size);
+      final List<List<Question>> children = new ArrayList<>(size);
+
+      for (int i = 0; i < size; i++) {
+
+        final int parent = i < topLevel ? -1 : (i - topLevel) / FAN_OUT;
+
+        questions.add(BooleanQuestion.builder()
+            .id(i + 1L)
+            .question("Q" + (i + 1))
+            .ranking(parent < 0 ? i : children.get(parent).size())
+            .optional(true)
+            .build());
+        children.add(new ArrayList<>(FAN_OUT));
+
+        if (parent >= 0)
+          children.get(parent).add(questions.get(i));
+      }
+
+      for (int i = 0; i < size; i++) {
+
+        if (children.get(i).isEmpty())
+          continue;
+
+        final BooleanQuestion parent = questions.get(i);
+        parent.setContainer(BooleanContainer.builder()
+            .questions(children.get(i))
+            .dependsOn(true)
+            .parent(parent)
+            .build());
+      }
+
+      return Survey.builder()
+          .questions(new ArrayList<>(questions.subList(0, topLevel)))
+          .nameId("BENCHMARK")
+          .title("TITLE")
+          .releaseStatus(ReleaseStatusType.RELEASED)
+          .build();
+    }
+  }
+}
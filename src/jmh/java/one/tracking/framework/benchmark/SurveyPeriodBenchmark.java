@@ -0,0 +1,78 @@
+/**
+ *
+ */
+package one.tracking.framework.benchmark;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import one.tracking.framework.component.SurveyPeriodComponent;
+import one.tracking.framework.domain.Period;
+import one.tracking.framework.entity.meta.IntervalType;
+import one.tracking.framework.entity.meta.ReleaseStatusType;
+import one.tracking.framework.entity.meta.Survey;
+import one.tracking.framework.support.ServiceUtility;
+
+/**
+ * Compares the calculation of the current survey period by {@link ServiceUtility} with the
+ * memoized period of the {@link SurveyPeriodComponent} for intervals, which started years ago.
+ *
+ * @author Marko Voß
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SurveyPeriodBenchmark {
+
+  @Param({"WEEKLY", "MONTHLY"})
+  private String intervalType;
+
+  private Survey survey;
+
+  private ServiceUtility utility;
+
+  private SurveyPeriodComponent component;
+
+  @Setup
+  public void setup() {
+
+    this.survey = Survey.builder()
+        .id(1L)
+        .nameId("BENCHMARK")
+        .intervalStart(Instant.parse("2010-01-04T00:00:00Z"))
+        .intervalType(IntervalType.valueOf(this.intervalType))
+        .intervalValue(1)
+        .releaseStatus(ReleaseStatusType.RELEASED)
+        .build();
+
+    this.utility = new ServiceUtility();
+
+    this.component = new SurveyPeriodComponent();
+    ReflectionTestUtils.setField(this.component, "utility", this.utility);
+  }
+
+  @Benchmark
+  public Period calculatedPeriod() {
+    return this.utility.getCurrentSurveyInstancePeriod(this.survey);
+  }
+
+  @Benchmark
+  public Period memoizedPeriod() {
+    return this.component.getCurrentPeriod(this.survey);
+  }
+}
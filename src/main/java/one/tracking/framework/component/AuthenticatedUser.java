@@ -0,0 +1,54 @@
+/**
+ *
+ */
+package one.tracking.framework.component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+import one.tracking.framework.entity.User;
+
+/**
+ * Holds the {@link User} authenticated by the bearer token of the current request. The existence of
+ * the user has already been verified by the authentication filter, hence the user is provided as a
+ * reference, which does not get loaded unless its state gets accessed.
+ *
+ * @author Marko Voß
+ *
+ */
+@Component
+@RequestScope
+public class AuthenticatedUser {
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  private User user;
+
+  /**
+   * @return the id of the authenticated user
+   */
+  public String getUserId() {
+
+    final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+    if (authentication == null)
+      throw new IllegalStateException("Unexpected state: The current request is not authenticated.");
+
+    return authentication.getName();
+  }
+
+  /**
+   * @return the reference of the authenticated user
+   */
+  public User getUser() {
+
+    if (this.user == null)
+      this.user = this.entityManager.getReference(User.class, getUserId());
+
+    return this.user;
+  }
+}
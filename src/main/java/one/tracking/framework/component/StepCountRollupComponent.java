@@ -0,0 +1,81 @@
+/**
+ *
+ */
+package one.tracking.framework.component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import one.tracking.framework.domain.StepCountRollupType;
+import one.tracking.framework.entity.StepCountRollup;
+import one.tracking.framework.entity.User;
+import one.tracking.framework.repo.StepCountRollupRepository;
+
+/**
+ * Maintains the {@link StepCountRollup}s of all {@link StepCountRollupType}s. Rollups only get
+ * updated by the increase of the step count timeline of a user, hence they never have to be
+ * recomputed from the raw step counts. Buckets are written by the native upsert of the database if
+ * supported, see {@link StepCountUpsertComponent}.
+ *
+ * @author Marko Voß
+ *
+ */
+@Component
+public class StepCountRollupComponent {
+
+  @Autowired
+  private StepCountRollupRepository stepCountRollupRepository;
+
+  @Autowired
+  private StepCountUpsertComponent stepCountUpsertComponent;
+
+  /**
+   * Adds the increase of the step counts within the specified buckets to the rollups of the user.
+   * Each bucket gets written by a single upsert statement. If upserts are not supported, existing
+   * buckets get updated and missing ones inserted.
+   *
+   * @param user the {@link User}
+   * @param type the {@link StepCountRollupType}
+   * @param deltas the increase of the step counts mapped by the start of their bucket
+   */
+  @Transactional
+  public void add(final User user, final StepCountRollupType type, final Map<Instant, Long> deltas) {
+
+    if (this.stepCountUpsertComponent.isRollupSupported()) {
+      this.stepCountUpsertComponent.upsertRollups(user, type, deltas);
+      return;
+    }
+
+    // Sorted to update the rows of concurrent transactions in the same order
+    for (final Map.Entry<Instant, Long> bucket : new TreeMap<>(deltas).entrySet()) {
+
+      if (this.stepCountRollupRepository.increment(user, type, bucket.getKey(), bucket.getValue()) > 0)
+        continue;
+
+      this.stepCountRollupRepository.save(StepCountRollup.builder()
+          .user(user)
+          .type(type)
+          .startTime(bucket.getKey())
+          .stepCount(bucket.getValue())
+          .build());
+    }
+  }
+
+  /**
+   * @param user the {@link User}
+   * @param type the {@link StepCountRollupType}
+   * @param from the lower bound (inclusive), which gets aligned to the start of its bucket
+   * @param to the upper bound (exclusive)
+   * @return the existing rollups of the user within the specified range ordered by their start time
+   */
+  @Transactional(readOnly = true)
+  public List<StepCountRollup> getRollups(final User user, final StepCountRollupType type, final Instant from,
+      final Instant to) {
+
+    return this.stepCountRollupRepository.findByUserAndTypeAndStartTimeRange(user, type, type.getStart(from), to);
+  }
+}
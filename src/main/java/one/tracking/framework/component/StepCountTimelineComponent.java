@@ -0,0 +1,157 @@
+/**
+ *
+ */
+package one.tracking.framework.component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import one.tracking.framework.domain.StepCountRollupType;
+import one.tracking.framework.domain.StepCountTimeline;
+import one.tracking.framework.domain.StepCountTimeline.Segment;
+import one.tracking.framework.entity.StepCountSegment;
+import one.tracking.framework.entity.User;
+import one.tracking.framework.entity.health.StepCount;
+import one.tracking.framework.repo.StepCountSegmentRepository;
+import one.tracking.framework.repo.UserIdRepository;
+
+/**
+ * Maintains the persisted {@link StepCountTimeline} of each user. Step counts are reconciled
+ * incrementally as they arrive: only the segments around the new step counts are read and only
+ * changed segments are written. The increase of the timeline gets added to the rollups, so
+ * overlapping step counts of different devices are not counted twice. Concurrent reconciliations of
+ * the same user are serialized by locking the user.
+ *
+ * @author Marko Voß
+ *
+ */
+@Component
+public class StepCountTimelineComponent {
+
+  @Autowired
+  private StepCountSegmentRepository stepCountSegmentRepository;
+
+  @Autowired
+  private StepCountRollupComponent stepCountRollupComponent;
+
+  @Autowired
+  private UserIdRepository userIdRepository;
+
+  /**
+   * Reconciles the specified step counts with the timeline of the user. The timeline keeps the
+   * highest rate, hence step counts, which have been added before or which got exceeded by other
+   * step counts, do not change the timeline or the rollups. Step counts therefore do not need to be
+   * compared with the stored ones beforehand.
+   *
+   * @param user the {@link User}
+   * @param stepCounts the step counts
+   */
+  @Transactional
+  public void add(final User user, final Collection<StepCount> stepCounts) {
+
+    Instant start = null;
+    Instant end = null;
+
+    for (final StepCount stepCount : stepCounts) {
+
+      if (!stepCount.getStartTime().isBefore(stepCount.getEndTime()))
+        continue;
+
+      if (start == null || stepCount.getStartTime().isBefore(start))
+        start = stepCount.getStartTime();
+      if (end == null || stepCount.getEndTime().isAfter(end))
+        end = stepCount.getEndTime();
+    }
+
+    // Step counts of empty intervals do not change the timeline
+    if (start == null)
+      return;
+
+    // Read whole buckets, so the rollups can be computed from the timeline
+    Instant from = start;
+    Instant to = end;
+
+    for (final StepCountRollupType type : StepCountRollupType.values()) {
+
+      final Instant bucketStart = type.getStart(start);
+      final Instant bucketEnd = type.getEnd(type.getStart(end.minusMillis(1)));
+
+      if (bucketStart.isBefore(from))
+        from = bucketStart;
+      if (bucketEnd.isAfter(to))
+        to = bucketEnd;
+    }
+
+    // Locking the read segments does not prevent concurrent inserts into a range without segments
+    this.userIdRepository.findForUpdateById(user.getId());
+
+    final List<StepCountSegment> entities =
+        this.stepCountSegmentRepository.findForUpdateByUserAndRange(user, from, to);
+
+    final Map<Segment, StepCountSegment> existing = new HashMap<>(entities.size() * 2);
+
+    for (final StepCountSegment entity : entities) {
+      existing.put(new Segment(
+          entity.getStartTime().toEpochMilli(),
+          entity.getEndTime().toEpochMilli(),
+          entity.getStepCount(),
+          entity.getDuration()), entity);
+    }
+
+    final StepCountTimeline before = new StepCountTimeline(existing.keySet());
+    final StepCountTimeline after = new StepCountTimeline(existing.keySet());
+
+    for (final StepCount stepCount : stepCounts) {
+      after.add(
+          stepCount.getStartTime().toEpochMilli(),
+          stepCount.getEndTime().toEpochMilli(),
+          stepCount.getStepCount());
+    }
+
+    final List<StepCountSegment> inserts = new ArrayList<>();
+
+    for (final Segment segment : after.getSegments()) {
+
+      // Unchanged segments are kept, remaining ones got replaced
+      if (existing.remove(segment) != null)
+        continue;
+
+      inserts.add(StepCountSegment.builder()
+          .user(user)
+          .startTime(Instant.ofEpochMilli(segment.getStart()))
+          .endTime(Instant.ofEpochMilli(segment.getEnd()))
+          .stepCount(segment.getCount())
+          .duration(segment.getDuration())
+          .build());
+    }
+
+    this.stepCountSegmentRepository.deleteAll(existing.values());
+    this.stepCountSegmentRepository.saveAll(inserts);
+
+    for (final StepCountRollupType type : StepCountRollupType.values()) {
+
+      final Map<Instant, Long> deltas = new TreeMap<>();
+
+      for (Instant bucket = type.getStart(start); bucket.isBefore(end); bucket = type.getEnd(bucket)) {
+
+        final long bucketStart = bucket.toEpochMilli();
+        final long bucketEnd = type.getEnd(bucket).toEpochMilli();
+
+        final long delta = Math.round(after.sum(bucketStart, bucketEnd))
+            - Math.round(before.sum(bucketStart, bucketEnd));
+
+        if (delta != 0)
+          deltas.put(bucket, delta);
+      }
+
+      this.stepCountRollupComponent.add(user, type, deltas);
+    }
+  }
+}
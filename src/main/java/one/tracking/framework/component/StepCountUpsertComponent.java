@@ -0,0 +1,355 @@
+/**
+ *
+ */
+package one.tracking.framework.component;
+
+import java.lang.reflect.AnnotatedElement;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.PersistenceContext;
+import javax.persistence.metamodel.EntityType;
+import javax.sql.DataSource;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import one.tracking.framework.domain.StepCountRollupType;
+import one.tracking.framework.entity.StepCountRollup;
+import one.tracking.framework.entity.User;
+import one.tracking.framework.entity.health.StepCount;
+
+/**
+ * Writes {@link StepCount}s and {@link StepCountRollup}s by the native upsert statement of the
+ * database. A step count gets inserted if its interval does not exist yet. Otherwise the count of the
+ * existing interval will be increased if the new count is higher. A rollup gets inserted if its bucket
+ * does not exist yet. Otherwise the delta will be added to the existing bucket. Each step count and
+ * each bucket is written by a single atomic statement without reading it first. The step counts and
+ * buckets of a call are sent to the database as one JDBC batch.<br/>
+ * <br/>
+ * The database is determined on startup. On MySQL the upserts rely on the unique keys on the user,
+ * start time and end time columns of the step count table and on the user, type and start time
+ * columns of the rollup table. If a unique key is missing, upserts of the affected table are not
+ * supported and must be written by reading them first.<br/>
+ * <br/>
+ * The upsert of step counts assumes the id of {@link StepCount} to be generated by an identity
+ * column. Besides the id, only the user, step count, interval, version and, if the column exists,
+ * creation time are inserted. If the id is generated differently or the step count table contains
+ * any other column without a default value, upserts of step counts are not supported.
+ *
+ * @author Marko Voß
+ *
+ */
+@Component
+public class StepCountUpsertComponent {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StepCountUpsertComponent.class);
+
+  private static final String TABLE = "step_count";
+
+  private static final Set<String> UNIQUE_KEY = Set.of("user_id", "start_time", "end_time");
+
+  private static final String ROLLUP_TABLE = "step_count_rollup";
+
+  private static final Set<String> ROLLUP_UNIQUE_KEY = Set.of("user_id", "type", "start_time");
+
+  /*
+   * Inserted columns in the order of their parameters. The version is inserted as literal.
+   */
+  private static final List<String> COLUMNS = List.of("user_id", "step_count", "start_time", "end_time");
+
+  private static final String CREATED_AT = "created_at";
+
+  /*
+   * Columns of the step count table which are written by the update
+   */
+  private static final Set<String> UPDATED_COLUMNS = Set.of("version", "updated_at");
+
+  /*
+   * Assignments are evaluated from left to right, hence the step count must be assigned last. The
+   * placeholder gets replaced by the columns and values of the optional creation time.
+   */
+  private static final String MYSQL_UPSERT =
+      "INSERT INTO step_count (user_id, step_count, start_time, end_time, version%s)"
+          + " VALUES (?, ?, ?, ?, 0%s) ON DUPLICATE KEY UPDATE"
+          + " updated_at = IF(VALUES(step_count) > step_count, ?, updated_at),"
+          + " version = IF(VALUES(step_count) > step_count, version + 1, version),"
+          + " step_count = GREATEST(step_count, VALUES(step_count))";
+
+  private static final String H2_UPSERT =
+      "MERGE INTO step_count t USING (SELECT CAST(? AS VARCHAR) AS user_id, CAST(? AS INT) AS step_count,"
+          + " CAST(? AS TIMESTAMP) AS start_time, CAST(? AS TIMESTAMP) AS end_time%s) s"
+          + " ON (t.user_id = s.user_id AND t.start_time = s.start_time AND t.end_time = s.end_time)"
+          + " WHEN MATCHED THEN UPDATE SET"
+          + " step_count = GREATEST(t.step_count, s.step_count),"
+          + " version = CASE WHEN s.step_count > t.step_count THEN t.version + 1 ELSE t.version END,"
+          + " updated_at = CASE WHEN s.step_count > t.step_count THEN CAST(? AS TIMESTAMP) ELSE t.updated_at END"
+          + " WHEN NOT MATCHED THEN INSERT (user_id, step_count, start_time, end_time, version%s)"
+          + " VALUES (s.user_id, s.step_count, s.start_time, s.end_time, 0%s)";
+
+  private static final String MYSQL_ROLLUP_UPSERT =
+      "INSERT INTO step_count_rollup (user_id, type, start_time, step_count) VALUES (?, ?, ?, ?)"
+          + " ON DUPLICATE KEY UPDATE step_count = step_count + VALUES(step_count)";
+
+  private static final String H2_ROLLUP_UPSERT =
+      "MERGE INTO step_count_rollup t USING (SELECT CAST(? AS VARCHAR) AS user_id, CAST(? AS VARCHAR) AS type,"
+          + " CAST(? AS TIMESTAMP) AS start_time, CAST(? AS BIGINT) AS step_count) s"
+          + " ON (t.user_id = s.user_id AND t.type = s.type AND t.start_time = s.start_time)"
+          + " WHEN MATCHED THEN UPDATE SET step_count = t.step_count + s.step_count"
+          + " WHEN NOT MATCHED THEN INSERT (user_id, type, start_time, step_count)"
+          + " VALUES (s.user_id, s.type, s.start_time, s.step_count)";
+
+  @Autowired
+  private DataSource dataSource;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  /*
+   * The upsert statement of step counts or null if not supported
+   */
+  private String sql;
+
+  private boolean createdAt;
+
+  /*
+   * The upsert statement of rollups or null if not supported
+   */
+  private String rollupSql;
+
+  @PostConstruct
+  public void init() throws SQLException {
+
+    try (Connection connection = this.dataSource.getConnection()) {
+
+      final DatabaseMetaData metaData = connection.getMetaData();
+      final String database = metaData.getDatabaseProductName();
+      final String catalog = connection.getCatalog();
+
+      if ("H2".equalsIgnoreCase(database)) {
+
+        if (isInsertable(metaData, catalog)) {
+          this.sql = String.format(H2_UPSERT,
+              this.createdAt ? ", CAST(? AS TIMESTAMP) AS created_at" : "",
+              this.createdAt ? ", created_at" : "",
+              this.createdAt ? ", s.created_at" : "");
+        }
+
+        this.rollupSql = H2_ROLLUP_UPSERT;
+
+      } else if ("MySQL".equalsIgnoreCase(database)) {
+
+        if (!hasUniqueKey(metaData, catalog, TABLE, UNIQUE_KEY))
+          LOG.warn("Missing unique key ({}) on table {}. Step counts will be written by reading them first.",
+              String.join(", ", UNIQUE_KEY), TABLE);
+        else if (isInsertable(metaData, catalog))
+          this.sql = String.format(MYSQL_UPSERT,
+              this.createdAt ? ", created_at" : "",
+              this.createdAt ? ", ?" : "");
+
+        if (hasUniqueKey(metaData, catalog, ROLLUP_TABLE, ROLLUP_UNIQUE_KEY))
+          this.rollupSql = MYSQL_ROLLUP_UPSERT;
+        else
+          LOG.warn("Missing unique key ({}) on table {}. Rollups will be written by updating them first.",
+              String.join(", ", ROLLUP_UNIQUE_KEY), ROLLUP_TABLE);
+
+      } else {
+        LOG.info("Upserts of step counts are not supported by {}.", database);
+      }
+    }
+  }
+
+  /**
+   * @return <code>true</code> if native upserts are supported by the database
+   */
+  public boolean isSupported() {
+    return this.sql != null;
+  }
+
+  /**
+   * Upserts the specified, not persisted step counts by a single JDBC batch.
+   *
+   * @param stepCounts the step counts to write
+   * @throws UnsupportedOperationException if native upserts are not supported by the database
+   */
+  @Transactional
+  public void upsert(final Collection<StepCount> stepCounts) {
+
+    if (this.sql == null)
+      throw new UnsupportedOperationException("Upsert of step counts is not supported by the database.");
+
+    if (stepCounts.isEmpty())
+      return;
+
+    final Timestamp now = Timestamp.from(Instant.now());
+
+    this.entityManager.unwrap(Session.class).doWork(connection -> {
+
+      try (PreparedStatement statement = connection.prepareStatement(this.sql)) {
+
+        for (final StepCount stepCount : stepCounts) {
+
+          int index = 1;
+          statement.setString(index++, stepCount.getUser().getId());
+          statement.setInt(index++, stepCount.getStepCount());
+          statement.setTimestamp(index++, Timestamp.from(stepCount.getStartTime()));
+          statement.setTimestamp(index++, Timestamp.from(stepCount.getEndTime()));
+
+          if (this.createdAt)
+            statement.setTimestamp(index++, now);
+
+          statement.setTimestamp(index, now);
+          statement.addBatch();
+        }
+
+        statement.executeBatch();
+      }
+    });
+  }
+
+  /**
+   * @return <code>true</code> if native upserts of rollups are supported by the database
+   */
+  public boolean isRollupSupported() {
+    return this.rollupSql != null;
+  }
+
+  /**
+   * Upserts the increase of the step counts within the specified buckets to the rollups of the user
+   * by a single JDBC batch.
+   *
+   * @param user the {@link User}
+   * @param type the {@link StepCountRollupType}
+   * @param deltas the increase of the step counts mapped by the start of their bucket
+   * @throws UnsupportedOperationException if native upserts of rollups are not supported by the
+   *         database
+   */
+  @Transactional
+  public void upsertRollups(final User user, final StepCountRollupType type, final Map<Instant, Long> deltas) {
+
+    if (this.rollupSql == null)
+      throw new UnsupportedOperationException("Upsert of rollups is not supported by the database.");
+
+    if (deltas.isEmpty())
+      return;
+
+    this.entityManager.unwrap(Session.class).doWork(connection -> {
+
+      try (PreparedStatement statement = connection.prepareStatement(this.rollupSql)) {
+
+        // Sorted to update the rows of concurrent transactions in the same order
+        for (final Map.Entry<Instant, Long> bucket : new TreeMap<>(deltas).entrySet()) {
+          statement.setString(1, user.getId());
+          statement.setString(2, type.name());
+          statement.setTimestamp(3, Timestamp.from(bucket.getKey()));
+          statement.setLong(4, bucket.getValue());
+          statement.addBatch();
+        }
+
+        statement.executeBatch();
+      }
+    });
+  }
+
+  /**
+   * Checks whether step counts can be inserted by the upsert statement: The id of {@link StepCount}
+   * must be mapped as identity and any column of the step count table, which is not written by the
+   * statement, must either be generated by the database or have a default value. Also determines
+   * whether the creation time must be inserted.
+   */
+  private boolean isInsertable(final DatabaseMetaData metaData, final String catalog) throws SQLException {
+
+    if (!hasIdentityId()) {
+      LOG.warn("The id of {} is not generated by an identity column. Step counts will be written by reading them"
+          + " first.", StepCount.class.getSimpleName());
+      return false;
+    }
+
+    final String table = metaData.storesUpperCaseIdentifiers() ? TABLE.toUpperCase() : TABLE;
+    final List<String> missing = new ArrayList<>();
+    final Set<String> columns = new HashSet<>();
+
+    try (ResultSet result = metaData.getColumns(catalog, null, table, null)) {
+      while (result.next()) {
+
+        final String column = result.getString("COLUMN_NAME").toLowerCase();
+        columns.add(column);
+
+        if (COLUMNS.contains(column) || UPDATED_COLUMNS.contains(column) || CREATED_AT.equals(column))
+          continue;
+
+        final boolean required = result.getInt("NULLABLE") == DatabaseMetaData.columnNoNulls
+            && result.getString("COLUMN_DEF") == null
+            && !"YES".equalsIgnoreCase(result.getString("IS_AUTOINCREMENT"));
+
+        if (required)
+          missing.add(column);
+      }
+    }
+
+    if (!columns.containsAll(COLUMNS) || !columns.containsAll(UPDATED_COLUMNS)) {
+      LOG.warn("Unexpected columns {} of table {}. Step counts will be written by reading them first.", columns,
+          TABLE);
+      return false;
+    }
+
+    if (!missing.isEmpty()) {
+      LOG.warn("Columns {} of table {} are not written by the upsert. Step counts will be written by reading them"
+          + " first.", missing, TABLE);
+      return false;
+    }
+
+    this.createdAt = columns.contains(CREATED_AT);
+    return true;
+  }
+
+  private boolean hasIdentityId() {
+
+    final EntityType<StepCount> entity = this.entityManager.getMetamodel().entity(StepCount.class);
+    final Object member = entity.getId(entity.getIdType().getJavaType()).getJavaMember();
+
+    if (!(member instanceof AnnotatedElement))
+      return false;
+
+    final GeneratedValue generatedValue = ((AnnotatedElement) member).getAnnotation(GeneratedValue.class);
+    return generatedValue != null && generatedValue.strategy() == GenerationType.IDENTITY;
+  }
+
+  /**
+   * Checks whether any unique index of the specified table consists of exactly the specified
+   * columns.
+   */
+  private static boolean hasUniqueKey(final DatabaseMetaData metaData, final String catalog, final String table,
+      final Set<String> key) throws SQLException {
+
+    final Map<String, Set<String>> indices = new HashMap<>();
+
+    try (ResultSet result = metaData.getIndexInfo(catalog, null, table, true, false)) {
+      while (result.next()) {
+        final String column = result.getString("COLUMN_NAME");
+        if (column != null)
+          indices.computeIfAbsent(result.getString("INDEX_NAME"), name -> new HashSet<>()).add(column.toLowerCase());
+      }
+    }
+
+    return indices.containsValue(key);
+  }
+}
@@ -0,0 +1,359 @@
+/**
+ *
+ */
+package one.tracking.framework.component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import lombok.Data;
+import one.tracking.framework.dto.StepCountDto;
+import one.tracking.framework.entity.User;
+import one.tracking.framework.exception.StepCountQueueFullException;
+import one.tracking.framework.service.HealthService;
+
+/**
+ * Bounded in-memory queue of step counts, which get stored asynchronously by a pool of workers.
+ * Step counts of the same interval of a user are coalesced by keeping the highest count while
+ * waiting to be stored. Workers store the pending step counts in batches, so the latency of
+ * accepting step counts does not depend on the database. The step counts of a user are only stored
+ * by one worker at a time. Pending step counts get stored before the application shuts down and no
+ * further step counts are accepted while shutting down.
+ * <p>
+ * Step counts, which could not be stored by a worker, are queued again unless they already failed
+ * {@link #maxAttempts} times, in which case they are logged and discarded.
+ * </p>
+ * The queue is only active if enabled by the property:
+ * <code>app.health.stepcounts.writeBehind.enable=true</code>
+ *
+ * @author Marko Voß
+ *
+ */
+@Component
+@ConditionalOnProperty(name = "app.health.stepcounts.writeBehind.enable", havingValue = "true")
+public class StepCountWriteBehindComponent {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StepCountWriteBehindComponent.class);
+
+  private final Lock lock = new ReentrantLock();
+
+  private final Condition notEmpty = this.lock.newCondition();
+
+  /*
+   * The highest pending count of each interval in order of arrival
+   */
+  private final Map<Key, Integer> pending = new LinkedHashMap<>();
+
+  /*
+   * The number of failed attempts to store each interval
+   */
+  private final Map<Key, Integer> failures = new HashMap<>();
+
+  /*
+   * The users whose step counts are currently stored by a worker
+   */
+  private final Set<String> storing = new HashSet<>();
+
+  private final AtomicLong discarded = new AtomicLong();
+
+  private boolean running;
+
+  private ExecutorService executor;
+
+  @Value("${app.health.stepcounts.writeBehind.capacity:100000}")
+  private int capacity;
+
+  @Value("${app.health.stepcounts.writeBehind.batchSize:1000}")
+  private int batchSize;
+
+  @Value("${app.health.stepcounts.writeBehind.workers:2}")
+  private int workers;
+
+  @Value("${app.health.stepcounts.writeBehind.shutdownTimeout:30000}")
+  private long shutdownTimeout;
+
+  @Value("${app.health.stepcounts.writeBehind.maxAttempts:3}")
+  private int maxAttempts;
+
+  @Value("${app.health.stepcounts.maxSize:5000}")
+  private int maxSize;
+
+  @Autowired
+  private HealthService healthService;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @PostConstruct
+  public void start() {
+
+    // A batch of a single user must not exceed the size accepted by the health service
+    this.batchSize = Math.max(1, Math.min(this.batchSize, this.maxSize));
+
+    final AtomicInteger threadCount = new AtomicInteger();
+
+    this.executor = Executors.newFixedThreadPool(this.workers,
+        runnable -> new Thread(runnable, "stepcount-writer-" + threadCount.incrementAndGet()));
+
+    this.running = true;
+
+    for (int i = 0; i < this.workers; i++) {
+      this.executor.execute(this::work);
+    }
+  }
+
+  /**
+   * Stores the pending step counts and stops the workers.
+   */
+  @PreDestroy
+  public void stop() throws InterruptedException {
+
+    this.lock.lock();
+    try {
+      this.running = false;
+      this.notEmpty.signalAll();
+    } finally {
+      this.lock.unlock();
+    }
+
+    this.executor.shutdown();
+
+    if (!this.executor.awaitTermination(this.shutdownTimeout, TimeUnit.MILLISECONDS))
+      LOG.warn("Discarding {} pending step counts as they could not be stored in time.", size());
+  }
+
+  /**
+   * Validates the specified step counts and queues them to be stored asynchronously. Either all or
+   * none of the step counts will be queued.
+   *
+   * @param userId the id of the user
+   * @param stepCountDtos the step counts to store
+   * @throws StepCountQueueFullException if the queue can not take the step counts or is stopped
+   */
+  public void offer(final String userId, final List<StepCountDto> stepCountDtos)
+      throws StepCountQueueFullException {
+
+    this.healthService.validateStepCounts(stepCountDtos);
+
+    final List<Key> keys = new ArrayList<>(stepCountDtos.size());
+    for (final StepCountDto stepCountDto : stepCountDtos) {
+      keys.add(new Key(userId, stepCountDto.getStartTime(), stepCountDto.getEndTime()));
+    }
+
+    this.lock.lock();
+    try {
+
+      if (!this.running)
+        throw new StepCountQueueFullException("Step counts are not accepted while shutting down. Try again later.");
+
+      final Set<Key> added = new HashSet<>();
+      for (final Key key : keys) {
+        if (!this.pending.containsKey(key))
+          added.add(key);
+      }
+
+      if (this.pending.size() + added.size() > this.capacity)
+        throw new StepCountQueueFullException("Too many pending step counts. Try again later.");
+
+      for (int i = 0; i < keys.size(); i++) {
+        this.pending.merge(keys.get(i), stepCountDtos.get(i).getCount(), Math::max);
+      }
+
+      this.notEmpty.signal();
+
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * @return the number of step counts discarded after {@link #maxAttempts} failed attempts to store
+   *         them
+   */
+  public long getDiscarded() {
+    return this.discarded.get();
+  }
+
+  /**
+   * @return the number of pending step counts
+   */
+  public int size() {
+
+    this.lock.lock();
+    try {
+      return this.pending.size();
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  private void work() {
+
+    while (true) {
+
+      Map<String, List<StepCountDto>> batch;
+
+      this.lock.lock();
+      try {
+
+        while ((batch = take()).isEmpty()) {
+
+          // Workers only stop once all pending step counts got taken
+          if (!this.running && this.pending.isEmpty())
+            return;
+
+          this.notEmpty.await();
+        }
+
+        if (!this.pending.isEmpty())
+          this.notEmpty.signal();
+
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } finally {
+        this.lock.unlock();
+      }
+
+      for (final Map.Entry<String, List<StepCountDto>> entry : batch.entrySet()) {
+
+        final boolean stored = store(entry.getKey(), entry.getValue());
+
+        this.lock.lock();
+        try {
+
+          if (stored)
+            succeeded(entry.getKey(), entry.getValue());
+          else
+            failed(entry.getKey(), entry.getValue());
+
+          this.storing.remove(entry.getKey());
+          this.notEmpty.signalAll();
+
+        } finally {
+          this.lock.unlock();
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes up to {@link #batchSize} of the oldest pending step counts grouped by user. Step counts of
+   * users, which are currently stored by another worker, are skipped. The users of the batch are
+   * marked as being stored until released by the worker.
+   */
+  private Map<String, List<StepCountDto>> take() {
+
+    final Map<String, List<StepCountDto>> batch = new LinkedHashMap<>();
+    final Iterator<Map.Entry<Key, Integer>> iterator = this.pending.entrySet().iterator();
+
+    int size = 0;
+
+    while (size < this.batchSize && iterator.hasNext()) {
+
+      final Map.Entry<Key, Integer> entry = iterator.next();
+      final String userId = entry.getKey().getUserId();
+
+      if (!batch.containsKey(userId) && !this.storing.add(userId))
+        continue;
+
+      iterator.remove();
+      size++;
+
+      batch.computeIfAbsent(userId, key -> new ArrayList<>()).add(StepCountDto.builder()
+          .count(entry.getValue())
+          .startTime(entry.getKey().getStartTime())
+          .endTime(entry.getKey().getEndTime())
+          .build());
+    }
+
+    return batch;
+  }
+
+  private boolean store(final String userId, final List<StepCountDto> stepCountDtos) {
+
+    try {
+
+      this.transactionTemplate.executeWithoutResult(status -> this.healthService.storeStepCounts(
+          this.entityManager.getReference(User.class, userId), stepCountDtos));
+
+      return true;
+
+    } catch (final RuntimeException e) {
+      LOG.error("Failed to store {} step counts of user {}.", stepCountDtos.size(), userId, e);
+      return false;
+    }
+  }
+
+  private void succeeded(final String userId, final List<StepCountDto> stepCountDtos) {
+
+    if (this.failures.isEmpty())
+      return;
+
+    for (final StepCountDto stepCountDto : stepCountDtos) {
+      this.failures.remove(new Key(userId, stepCountDto.getStartTime(), stepCountDto.getEndTime()));
+    }
+  }
+
+  /**
+   * Queues the specified step counts again, which get coalesced with step counts of the same
+   * intervals queued in the meantime. Step counts exceeding {@link #maxAttempts} get discarded.
+   */
+  private void failed(final String userId, final List<StepCountDto> stepCountDtos) {
+
+    int count = 0;
+
+    for (final StepCountDto stepCountDto : stepCountDtos) {
+
+      final Key key = new Key(userId, stepCountDto.getStartTime(), stepCountDto.getEndTime());
+
+      if (this.failures.merge(key, 1, Integer::sum) < this.maxAttempts) {
+        this.pending.merge(key, stepCountDto.getCount(), Math::max);
+      } else {
+        this.failures.remove(key);
+        count++;
+      }
+    }
+
+    if (count > 0)
+      LOG.error("Discarding {} step counts of user {} after {} failed attempts. {} step counts discarded in total.",
+          count, userId, this.maxAttempts, this.discarded.addAndGet(count));
+  }
+
+  @Data
+  private static class Key {
+
+    private final String userId;
+
+    private final long startTime;
+
+    private final long endTime;
+  }
+}
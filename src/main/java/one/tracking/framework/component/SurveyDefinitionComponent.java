@@ -0,0 +1,155 @@
+/**
+ *
+ */
+package one.tracking.framework.component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import one.tracking.framework.domain.SerializedSurvey;
+import one.tracking.framework.domain.SurveyGraph;
+import one.tracking.framework.domain.SurveyVersion;
+import one.tracking.framework.dto.SurveyJsonWriter;
+import one.tracking.framework.entity.meta.ReleaseStatusType;
+import one.tracking.framework.entity.meta.Survey;
+import one.tracking.framework.repo.SurveyRepository;
+import one.tracking.framework.repo.SurveyTagRepository;
+
+/**
+ * Holds the serialized JSON representation of each released survey version. Released survey
+ * versions are immutable and their representation does not depend on the requesting user, hence a
+ * survey gets serialized only once per nameId and version. The JSON is streamed from the compiled
+ * {@link SurveyGraph}, so no DTO tree gets created. Serializing a newer version of a survey does
+ * evict the representations of all older versions of that survey.
+ *
+ * @author Marko Voß
+ *
+ */
+@Component
+@Transactional(readOnly = true)
+public class SurveyDefinitionComponent {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SurveyDefinitionComponent.class);
+
+  /*
+   * The survey id does identify exactly one version of a survey
+   */
+  private final Map<Long, SerializedSurvey> definitions = new ConcurrentHashMap<>();
+
+  @Autowired
+  private SurveyRepository surveyRepository;
+
+  @Autowired
+  private SurveyTagRepository surveyTagRepository;
+
+  @Autowired
+  private SurveyGraphComponent surveyGraphComponent;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  /**
+   * @param nameId the nameId of the survey
+   * @return the {@link SurveyVersion} of the latest released version of the specified survey
+   */
+  public Optional<SurveyVersion> getReleasedVersion(final String nameId) {
+
+    return this.surveyTagRepository.findLatestVersion(nameId, ReleaseStatusType.RELEASED);
+  }
+
+  /**
+   * @param version the {@link SurveyVersion}
+   * @return the {@link SerializedSurvey} of the specified survey version
+   */
+  public SerializedSurvey getDefinition(final SurveyVersion version) {
+
+    final SerializedSurvey cached = this.definitions.get(version.getSurveyId());
+
+    if (cached != null)
+      return cached;
+
+    return getDefinition(this.surveyRepository.findById(version.getSurveyId())
+        .orElseThrow(() -> new NoSuchElementException("No survey found with id: " + version.getSurveyId())));
+  }
+
+  /**
+   * @param version the {@link SurveyVersion}
+   * @return the last modification time of the specified survey version in milliseconds, which is the
+   *         point in time its graph has been compiled
+   */
+  public long getLastModified(final SurveyVersion version) {
+
+    final SerializedSurvey cached = this.definitions.get(version.getSurveyId());
+
+    if (cached != null)
+      return cached.getLastModified().toEpochMilli();
+
+    return this.surveyGraphComponent.getGraph(version.getSurveyId()).getCompiledAt().toEpochMilli();
+  }
+
+  /**
+   * Returns the {@link SerializedSurvey} of the specified {@link Survey}. Surveys, which are not
+   * released yet, will be serialized on each call as they are still subject to change.
+   *
+   * @param survey the {@link Survey}
+   * @return the {@link SerializedSurvey} of the specified survey
+   */
+  public SerializedSurvey getDefinition(final Survey survey) {
+
+    if (survey.getReleaseStatus() != ReleaseStatusType.RELEASED)
+      return serialize(survey);
+
+    final SerializedSurvey cached = this.definitions.get(survey.getId());
+
+    if (cached != null)
+      return cached;
+
+    final SerializedSurvey definition = this.definitions.computeIfAbsent(survey.getId(), key -> serialize(survey));
+
+    LOG.debug("Serialized survey: {}", definition);
+
+    this.definitions.values().removeIf(
+        p -> p.getNameId().equals(definition.getNameId()) && p.getVersion() < definition.getVersion());
+
+    return definition;
+  }
+
+  private SerializedSurvey serialize(final Survey survey) {
+
+    try {
+
+      final SurveyGraph graph = this.surveyGraphComponent.getGraph(survey);
+
+      // Stream the JSON from the compiled graph instead of creating the DTO tree
+      final ByteArrayOutputStream jsonOut = new ByteArrayOutputStream(graph.size() * 128);
+      try (JsonGenerator generator = this.objectMapper.getFactory().createGenerator(jsonOut, JsonEncoding.UTF8)) {
+        SurveyJsonWriter.write(graph, generator);
+      }
+      final byte[] json = jsonOut.toByteArray();
+
+      final ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4);
+      try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+        gzip.write(json);
+      }
+
+      return new SerializedSurvey(survey.getId(), survey.getNameId(), survey.getVersion(), json, out.toByteArray(),
+          graph.getCompiledAt());
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,80 @@
+/**
+ *
+ */
+package one.tracking.framework.component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import lombok.Value;
+import one.tracking.framework.entity.SurveyInstance;
+import one.tracking.framework.entity.User;
+
+/**
+ * Remembers the users, who completed the instance of a survey, on which other surveys depend. Once
+ * completed, the dependency stays satisfied until the end of the instance. Hence only positive
+ * results are held and they expire at the end time of the instance.
+ *
+ * @author Marko Voß
+ *
+ */
+@Component
+public class SurveyDependencyComponent {
+
+  /*
+   * The end time of the satisfied instance by user and instance
+   */
+  private final Map<Key, Instant> satisfied = new ConcurrentHashMap<>();
+
+  /**
+   * @param user the {@link User}
+   * @param instance the {@link SurveyInstance} of the dependency
+   * @return <code>true</code> if the user has been marked to have completed the specified instance
+   */
+  public boolean isSatisfied(final User user, final SurveyInstance instance) {
+
+    final Instant endTime = this.satisfied.get(new Key(user.getId(), instance.getId()));
+    return endTime != null && !Instant.now().isAfter(endTime);
+  }
+
+  /**
+   * Marks the specified instance to be completed by the user until the end of the instance.
+   *
+   * @param user the {@link User}
+   * @param instance the {@link SurveyInstance} of the dependency
+   */
+  public void setSatisfied(final User user, final SurveyInstance instance) {
+    this.satisfied.put(new Key(user.getId(), instance.getId()), instance.getEndTime());
+  }
+
+  /**
+   * Evicts the mark of the specified instance, e.g. after the status of the user is no longer
+   * completed.
+   *
+   * @param user the {@link User}
+   * @param instance the {@link SurveyInstance} of the dependency
+   */
+  public void evict(final User user, final SurveyInstance instance) {
+    this.satisfied.remove(new Key(user.getId(), instance.getId()));
+  }
+
+  /**
+   * Evicts the entries of all instances, which already ended.
+   */
+  @Scheduled(fixedDelayString = "${app.survey.dependency.eviction.delay:60000}")
+  public void evictExpired() {
+
+    final Instant now = Instant.now();
+    this.satisfied.values().removeIf(p -> now.isAfter(p));
+  }
+
+  @Value
+  private static class Key {
+
+    private final String userId;
+
+    private final Long instanceId;
+  }
+}
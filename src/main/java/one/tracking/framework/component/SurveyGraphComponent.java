@@ -0,0 +1,91 @@
+/**
+ *
+ */
+package one.tracking.framework.component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import one.tracking.framework.domain.SurveyGraph;
+import one.tracking.framework.entity.meta.ReleaseStatusType;
+import one.tracking.framework.entity.meta.Survey;
+import one.tracking.framework.repo.SurveyRepository;
+
+/**
+ * Holds the compiled {@link SurveyGraph} of each released survey version. Released survey versions
+ * are immutable, hence a graph gets compiled only once per nameId and version. Compiling a newer
+ * version of a survey does evict the graphs of all older versions of that survey.
+ *
+ * @author Marko Voß
+ *
+ */
+@Component
+@Transactional(readOnly = true)
+public class SurveyGraphComponent {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SurveyGraphComponent.class);
+
+  /*
+   * The survey id does identify exactly one version of a survey
+   */
+  private final Map<Long, SurveyGraph> graphs = new ConcurrentHashMap<>();
+
+  @Autowired
+  private SurveyRepository surveyRepository;
+
+  /**
+   * @param nameId the nameId of the survey
+   * @return the {@link SurveyGraph} of the latest released version of the specified survey
+   */
+  public Optional<SurveyGraph> getReleasedGraph(final String nameId) {
+
+    return this.surveyRepository.findTopByNameIdAndReleaseStatusOrderByVersionDesc(nameId, ReleaseStatusType.RELEASED)
+        .map(this::getGraph);
+  }
+
+  /**
+   * @param surveyId the id of the survey
+   * @return the {@link SurveyGraph} of the specified survey
+   */
+  public SurveyGraph getGraph(final Long surveyId) {
+
+    final SurveyGraph graph = this.graphs.get(surveyId);
+
+    if (graph != null)
+      return graph;
+
+    return getGraph(this.surveyRepository.findById(surveyId).get());
+  }
+
+  /**
+   * Returns the {@link SurveyGraph} of the specified {@link Survey}. Surveys, which are not released
+   * yet, will be compiled on each call as they are still subject to change.
+   *
+   * @param survey the {@link Survey}
+   * @return the {@link SurveyGraph} of the specified survey
+   */
+  public SurveyGraph getGraph(final Survey survey) {
+
+    if (survey.getReleaseStatus() != ReleaseStatusType.RELEASED)
+      return SurveyGraph.compile(survey);
+
+    final SurveyGraph cached = this.graphs.get(survey.getId());
+
+    if (cached != null)
+      return cached;
+
+    final SurveyGraph graph = this.graphs.computeIfAbsent(survey.getId(), key -> SurveyGraph.compile(survey));
+
+    LOG.debug("Compiled survey graph: {}", graph);
+
+    this.graphs.values().removeIf(
+        p -> p.getNameId().equals(graph.getNameId()) && p.getVersion() < graph.getVersion());
+
+    return graph;
+  }
+}
@@ -0,0 +1,147 @@
+/**
+ *
+ */
+package one.tracking.framework.component;
+
+import static one.tracking.framework.entity.DataConstants.TOKEN_SURVEY_LENGTH;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import one.tracking.framework.domain.Period;
+import one.tracking.framework.entity.SurveyInstance;
+import one.tracking.framework.entity.meta.ReleaseStatusType;
+import one.tracking.framework.entity.meta.Survey;
+import one.tracking.framework.repo.SurveyInstanceRepository;
+import one.tracking.framework.repo.SurveyOverviewRepository;
+import one.tracking.framework.support.ServiceUtility;
+
+/**
+ * Holds the current {@link SurveyInstance} of each survey. A cached instance expires exactly after
+ * its end time, which is inclusive. The instances of upcoming periods of interval based surveys get
+ * created ahead of time by a scheduled task, so the first requests of a new period do not race to
+ * create the same instance.
+ *
+ * @author Marko Voß
+ *
+ */
+@Component
+public class SurveyInstanceComponent {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SurveyInstanceComponent.class);
+
+  /*
+   * The current instance by survey id
+   */
+  private final Map<Long, SurveyInstance> currentInstances = new ConcurrentHashMap<>();
+
+  @Autowired
+  private SurveyInstanceRepository surveyInstanceRepository;
+
+  @Autowired
+  private SurveyOverviewRepository surveyOverviewRepository;
+
+  @Autowired
+  private SurveyPeriodComponent surveyPeriodComponent;
+
+  @Autowired
+  private ServiceUtility utility;
+
+  /**
+   * Self-healing implementation: If the current survey instance does not yet exist, it will be
+   * created on request.
+   *
+   * @param survey the {@link Survey}
+   * @return the current {@link SurveyInstance} of the specified survey
+   */
+  public SurveyInstance getCurrentInstance(final Survey survey) {
+
+    final SurveyInstance cached = this.currentInstances.get(survey.getId());
+
+    if (cached != null && isCurrent(cached, Instant.now()))
+      return cached;
+
+    final SurveyInstance instance = getInstance(survey, this.surveyPeriodComponent.getCurrentPeriod(survey));
+    this.currentInstances.put(survey.getId(), instance);
+
+    return instance;
+  }
+
+  /**
+   * @param survey the {@link Survey}
+   * @param token the token of the survey instance
+   * @return the {@link SurveyInstance} of the specified survey and token
+   */
+  public Optional<SurveyInstance> getInstance(final Survey survey, final String token) {
+
+    final SurveyInstance cached = this.currentInstances.get(survey.getId());
+
+    if (cached != null && cached.getToken().equals(token) && isCurrent(cached, Instant.now()))
+      return Optional.of(cached);
+
+    return this.surveyInstanceRepository.findBySurveyAndToken(survey, token);
+  }
+
+  /**
+   * Creates the instance of the next period of each released interval based survey, if it does not
+   * exist yet.
+   */
+  @Scheduled(
+      initialDelayString = "${app.survey.instance.scheduler.initialDelay:60000}",
+      fixedDelayString = "${app.survey.instance.scheduler.delay:900000}")
+  public void createUpcomingInstances() {
+
+    for (final Survey survey : this.surveyOverviewRepository.findLatestByReleaseStatus(ReleaseStatusType.RELEASED)) {
+      createUpcomingInstance(survey);
+    }
+
+    // Drop expired instances, e.g. of replaced survey versions. Instances of other survey versions,
+    // which are still current, are kept as surveys may depend on any version of another survey.
+    final Instant now = Instant.now();
+    this.currentInstances.values().removeIf(instance -> !isCurrent(instance, now));
+  }
+
+  private void createUpcomingInstance(final Survey survey) {
+
+    try {
+
+      final SurveyInstance current = getCurrentInstance(survey);
+
+      final Optional<Period> next = this.surveyPeriodComponent.getNextPeriod(survey,
+          Period.builder().start(current.getStartTime()).end(current.getEndTime()).build());
+
+      if (next.isPresent())
+        getInstance(survey, next.get());
+
+    } catch (final Exception e) {
+      LOG.error("Could not create upcoming instance of survey '" + survey.getNameId() + "'.", e);
+    }
+  }
+
+  private SurveyInstance getInstance(final Survey survey, final Period period) {
+
+    final Optional<SurveyInstance> instanceOp =
+        this.surveyInstanceRepository.findBySurveyAndStartTimeAndEndTime(survey, period.getStart(), period.getEnd());
+
+    if (instanceOp.isPresent())
+      return instanceOp.get();
+
+    LOG.debug("Creating instance of survey '{}' for period: {}", survey.getNameId(), period);
+
+    return this.surveyInstanceRepository.save(SurveyInstance.builder()
+        .survey(survey)
+        .startTime(period.getStart())
+        .endTime(period.getEnd())
+        .token(this.utility.generateString(TOKEN_SURVEY_LENGTH))
+        .build());
+  }
+
+  private static boolean isCurrent(final SurveyInstance instance, final Instant now) {
+    return !now.isBefore(instance.getStartTime()) && !now.isAfter(instance.getEndTime());
+  }
+}
@@ -0,0 +1,140 @@
+/**
+ *
+ */
+package one.tracking.framework.component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import one.tracking.framework.domain.Period;
+import one.tracking.framework.entity.meta.IntervalType;
+import one.tracking.framework.entity.meta.Survey;
+import one.tracking.framework.support.ServiceUtility;
+
+/**
+ * Calculates the periods of interval based surveys. The end of a period is inclusive, as the end of
+ * a survey instance. The current period of each survey is memoized until its end. Afterwards it
+ * rolls over to the following period, so the period does not need to be calculated from the start
+ * of the interval again.
+ *
+ * @author Marko Voß
+ *
+ */
+@Component
+public class SurveyPeriodComponent {
+
+  private static final Map<IntervalType, ChronoUnit> UNITS = new EnumMap<>(Map.of(
+      IntervalType.WEEKLY, ChronoUnit.WEEKS,
+      IntervalType.MONTHLY, ChronoUnit.MONTHS));
+
+  /*
+   * Upper bound of the gap between the end of a period and the start of the following period
+   */
+  private static final Duration MAX_GAP = Duration.ofSeconds(1);
+
+  /*
+   * The current period by survey id. Released survey versions are immutable, hence the interval of a
+   * survey id does not change.
+   */
+  private final Map<Long, Period> currentPeriods = new ConcurrentHashMap<>();
+
+  @Autowired
+  private ServiceUtility utility;
+
+  /**
+   * @param survey the {@link Survey}
+   * @return the current {@link Period} of the specified survey
+   */
+  public Period getCurrentPeriod(final Survey survey) {
+
+    final Instant now = Instant.now();
+
+    Period period = this.currentPeriods.get(survey.getId());
+
+    if (period != null && isCurrent(period, now))
+      return period;
+
+    if (period != null && now.isAfter(period.getEnd())) {
+
+      period = getNextPeriod(survey, period).orElse(null);
+
+      if (period != null && isCurrent(period, now)) {
+        this.currentPeriods.put(survey.getId(), period);
+        return period;
+      }
+    }
+
+    period = this.utility.getCurrentSurveyInstancePeriod(survey);
+
+    if (survey.getId() != null)
+      this.currentPeriods.put(survey.getId(), period);
+
+    return period;
+  }
+
+  /**
+   * Calculates the period following the specified period of an interval based survey by stepping
+   * forward from the specified period. The gap between the end of the specified period and the start
+   * of the next period will be preserved. Hence it does not matter whether the end of a period is
+   * considered to be inclusive or exclusive.
+   *
+   * @param survey the {@link Survey}
+   * @param period a period of the survey as calculated by {@link #getCurrentPeriod(Survey)}
+   * @return the next {@link Period} or {@link Optional#empty()} if the survey is not interval based or
+   *         if the length of the specified period does not match the interval of the survey
+   */
+  public Optional<Period> getNextPeriod(final Survey survey, final Period period) {
+
+    if (survey.getIntervalType() == null || survey.getIntervalStart() == null || survey.getIntervalValue() == null
+        || survey.getIntervalValue() < 1 || period == null || Period.INFINITE.equals(period))
+      return Optional.empty();
+
+    final ChronoUnit unit = UNITS.get(survey.getIntervalType());
+
+    if (unit == null)
+      return Optional.empty();
+
+    final int value = survey.getIntervalValue();
+    final ZonedDateTime origin = survey.getIntervalStart().atZone(ZoneOffset.UTC);
+
+    final ZonedDateTime start = step(origin, period.getStart().atZone(ZoneOffset.UTC), value, unit);
+    final Duration gap = Duration.between(period.getEnd(), start.toInstant());
+
+    if (gap.isNegative() || gap.compareTo(MAX_GAP) > 0)
+      return Optional.empty();
+
+    return Optional.of(Period.builder()
+        .start(start.toInstant())
+        .end(step(origin, start, value, unit).toInstant().minus(gap))
+        .build());
+  }
+
+  /**
+   * Adds the interval to the specified start of a period. Adding months truncates the day of month
+   * to the length of shorter months, hence the day of month of the interval start gets restored
+   * afterwards. This way each step results in the same start as adding the interval to the interval
+   * start multiple times.
+   */
+  private static ZonedDateTime step(final ZonedDateTime origin, final ZonedDateTime start, final int value,
+      final ChronoUnit unit) {
+
+    final ZonedDateTime next = start.plus(value, unit);
+
+    if (unit != ChronoUnit.MONTHS)
+      return next;
+
+    return next.withDayOfMonth(Math.min(origin.getDayOfMonth(), next.toLocalDate().lengthOfMonth()));
+  }
+
+  private static boolean isCurrent(final Period period, final Instant now) {
+    return !now.isBefore(period.getStart()) && !now.isAfter(period.getEnd());
+  }
+}
@@ -6,29 +6,36 @@ package one.tracking.framework.component;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
+import java.util.Objects;
+import java.util.function.IntSupplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import one.tracking.framework.domain.SurveyGraph;
+import one.tracking.framework.domain.SurveyResponseWrite;
 import one.tracking.framework.domain.SurveyStatusChange;
 import one.tracking.framework.dto.SurveyResponseDto;
 import one.tracking.framework.entity.SurveyInstance;
 import one.tracking.framework.entity.SurveyResponse;
 import one.tracking.framework.entity.User;
 import one.tracking.framework.entity.meta.Answer;
-import one.tracking.framework.entity.meta.container.Container;
-import one.tracking.framework.entity.meta.question.BooleanQuestion;
 import one.tracking.framework.entity.meta.question.ChecklistEntry;
-import one.tracking.framework.entity.meta.question.ChecklistQuestion;
-import one.tracking.framework.entity.meta.question.ChoiceQuestion;
 import one.tracking.framework.entity.meta.question.Question;
-import one.tracking.framework.repo.AnswerRepository;
-import one.tracking.framework.repo.ContainerRepository;
 import one.tracking.framework.repo.SurveyResponseRepository;
+import one.tracking.framework.repo.SurveyResponseVersionRepository;
 
 /**
+ * Persists survey responses append-only: Each response is inserted as a new version without
+ * reading or updating the previous version entity. The previous versions as well as the responses
+ * of all successive questions are invalidated by a single bulk update. Hence storing a response
+ * requires one bulk update and the batched inserts of the new versions.<br/>
+ * <br/>
+ * All question types share the same write pipeline: A response gets mapped to a list of
+ * {@link SurveyResponseWrite}s, which are inserted at once so that Hibernate can send them as a
+ * single JDBC batch.
+ *
  * @author Marko Voß
  *
  */
@@ -42,191 +49,107 @@ public class SurveyResponseComponent {
   private SurveyResponseRepository surveyResponseRepository;
 
   @Autowired
-  private ContainerRepository containerRepository;
-
-  @Autowired
-  private AnswerRepository answerRepository;
+  private SurveyResponseVersionRepository surveyResponseVersionRepository;
 
+  /**
+   * Stores the specified response to the question at the specified index of the graph.
+   *
+   * @param versions the supplier of the versions of the new responses, which must be increasing for
+   *        the specified user and survey instance
+   * @return the {@link SurveyStatusChange} caused by the response
+   */
   public SurveyStatusChange persistSurveyResponse(final User user, final SurveyInstance instance,
-      final Question question,
-      final SurveyResponseDto surveyResponse) {
+      final SurveyGraph graph,
+      final int index,
+      final SurveyResponseDto surveyResponse,
+      final IntSupplier versions) {
+
+    final Question question = graph.getQuestion(index);
 
     LOG.debug("Persisting survey response for user '{}'; Question: '{}', Response: {}", user.getId(),
         question.getQuestion(), surveyResponse);
 
-    if (!checkIfParentQuestionIsValid(user, instance, question))
+    if (!checkIfParentQuestionIsValid(user, instance, graph, index))
       return SurveyStatusChange.skip();
 
-    invalidateSubQuestionTree(user, instance, question);
-    invalidateSuccessiveQuestions(user, instance, question);
+    write(user, instance, getWrites(graph, index, surveyResponse), graph.getSuccessorIds(index), versions);
 
-    switch (question.getType()) {
+    switch (graph.getType(index)) {
       case BOOL:
-        storeBooleanResponse(surveyResponse, user, instance, question);
-        return SurveyStatusChange.withNextQuestion(getNextSubQuestion((BooleanQuestion) question, surveyResponse));
-      case CHECKLIST:
-        storeChecklistResponse(surveyResponse, user, instance, question);
-        break;
+        return SurveyStatusChange.withNextQuestion(getNextBooleanSubQuestion(graph, index, surveyResponse));
       case CHOICE:
-        storeChoiceResponse(surveyResponse, user, instance, question);
-        return SurveyStatusChange.withNextQuestion(getNextSubQuestion((ChoiceQuestion) question, surveyResponse));
-      case RANGE:
-      case NUMBER:
-        storeNumberResponse(surveyResponse, user, instance, question);
-        break;
-      case TEXT:
-        storeTextResponse(surveyResponse, user, instance, question);
-        break;
+        return SurveyStatusChange.withNextQuestion(getNextChoiceSubQuestion(graph, index, surveyResponse));
       default:
+        return SurveyStatusChange.noSkip();
     }
-    return SurveyStatusChange.noSkip();
   }
 
   /**
    * @return
    */
   private boolean checkIfParentQuestionIsValid(final User user, final SurveyInstance instance,
-      final Question question) {
-
-    final Optional<Container> containerOp = this.containerRepository.findByQuestionsIn(Collections.singleton(question));
+      final SurveyGraph graph, final int index) {
 
-    if (containerOp.isEmpty())
+    if (!graph.isContained(index))
       return false;
 
-    final Question parent = containerOp.get().getParent();
+    final int parent = graph.getParent(index);
 
-    if (parent == null)
+    if (parent == SurveyGraph.NONE)
       return true;
 
-    final Optional<SurveyResponse> surveyResponseOp = this.surveyResponseRepository
-        .findTopByUserAndSurveyInstanceAndQuestionOrderByVersionDesc(user, instance, parent);
-
-    return !surveyResponseOp.isEmpty() && !surveyResponseOp.get().isSkipped() && surveyResponseOp.get().isValid();
-  }
-
-  private final void invalidateSuccessiveQuestions(
-      final User user,
-      final SurveyInstance instance,
-      final Question currentQuestion) {
-
-    /*
-     * Invalidate next siblings
-     */
-
-    final Optional<Container> containerOp =
-        this.containerRepository.findByQuestionsIn(Collections.singleton(currentQuestion));
-
-    if (containerOp.isEmpty()) {
-      LOG.warn("Current question is not part of a container! QuestionId: {}", currentQuestion.getId());
-      return; // should not occur
-    }
-
-    final Container container = containerOp.get();
-
-    boolean found = false;
-    for (final Question question : container.getQuestions()) {
-
-      if (found && invalidateSurveyResponse(user, instance, question))
-        invalidateSubQuestionTree(user, instance, question);
-
-      if (!found && question.getId().equals(currentQuestion.getId()))
-        found = true;
-    }
-
-    /*
-     * Invalidate next parent siblings
-     */
-    if (container.getParent() == null)
-      return;
-
-    invalidateSuccessiveQuestions(user, instance, container.getParent());
-  }
-
-  private final void invalidateSubQuestionTree(
-      final User user,
-      final SurveyInstance instance,
-      final Question question) {
-
-    if (question.getSubQuestions() == null || question.getSubQuestions().isEmpty())
-      return;
-
-    for (final Question subQuestion : question.getSubQuestions()) {
-
-      if (invalidateSurveyResponse(user, instance, subQuestion))
-        invalidateSubQuestionTree(user, instance, subQuestion);
-    }
-  }
-
-  private final boolean invalidateSurveyResponse(final User user, final SurveyInstance instance,
-      final Question question) {
-
-    final Optional<SurveyResponse> responseOp = this.surveyResponseRepository
-        .findTopByUserAndSurveyInstanceAndQuestionAndValidOrderByVersionDesc(user, instance, question, true);
-
-    if (responseOp.isPresent()) {
-
-      this.surveyResponseRepository.save(responseOp.get().toBuilder()
-          .valid(false)
-          .build());
-      return true;
-    }
-    return false;
+    return this.surveyResponseVersionRepository.isAnswered(user, instance, graph.getQuestion(parent).getId());
   }
 
-  private final void storeBooleanResponse(
-      final SurveyResponseDto surveyResponse,
-      final User user,
-      final SurveyInstance instance,
-      final Question question) {
-
-    final Optional<SurveyResponse> entityOp =
-        this.surveyResponseRepository.findTopByUserAndSurveyInstanceAndQuestionOrderByVersionDesc(
-            user, instance, question);
+  /**
+   * Maps the specified response to the typed writes of the question. Checklist questions result in
+   * one write per entry.
+   */
+  private List<SurveyResponseWrite> getWrites(final SurveyGraph graph, final int index,
+      final SurveyResponseDto surveyResponse) {
 
+    final Question question = graph.getQuestion(index);
     final boolean isSkipped = surveyResponse.getSkipped() == null ? false : surveyResponse.getSkipped();
 
-    if (entityOp.isEmpty()) {
-
-      this.surveyResponseRepository.save(SurveyResponse.builder()
-          .question(question)
-          .surveyInstance(instance)
-          .user(user)
-          .boolAnswer(isSkipped ? null : surveyResponse.getBoolAnswer())
-          .skipped(isSkipped)
-          .valid(true)
-          .build());
-
-    } else {
-
-      final SurveyResponse entity = entityOp.get();
-      // Invalidate existing entity
-      this.surveyResponseRepository.save(entity.toBuilder()
-          .valid(false)
-          .build());
-      // Add new version
-      this.surveyResponseRepository.save(entity.newVersion()
-          .boolAnswer(isSkipped ? null : surveyResponse.getBoolAnswer())
-          .skipped(isSkipped)
-          .valid(true)
-          .build());
+    switch (graph.getType(index)) {
+      case BOOL:
+        return Collections.singletonList(SurveyResponseWrite.builder()
+            .question(question)
+            .boolAnswer(isSkipped ? null : surveyResponse.getBoolAnswer())
+            .skipped(isSkipped)
+            .build());
+      case CHECKLIST:
+        return getChecklistWrites(graph.getEntries(index), surveyResponse, isSkipped);
+      case CHOICE:
+        return Collections.singletonList(SurveyResponseWrite.builder()
+            .question(question)
+            .answers(isSkipped ? null : getAnswers(graph, index, surveyResponse))
+            .skipped(isSkipped)
+            .build());
+      case RANGE:
+      case NUMBER:
+        return Collections.singletonList(SurveyResponseWrite.builder()
+            .question(question)
+            .numberAnswer(isSkipped ? null : surveyResponse.getNumberAnswer())
+            .skipped(isSkipped)
+            .build());
+      case TEXT:
+        return Collections.singletonList(SurveyResponseWrite.builder()
+            .question(question)
+            .textAnswer(isSkipped ? null : surveyResponse.getTextAnswer())
+            .skipped(isSkipped)
+            .build());
+      default:
+        return Collections.emptyList();
     }
   }
 
-  private final void storeChecklistResponse(
-      final SurveyResponseDto surveyResponse,
-      final User user,
-      final SurveyInstance instance,
-      final Question question) {
-
-    final ChecklistQuestion checklistQuestion = (ChecklistQuestion) question;
+  private List<SurveyResponseWrite> getChecklistWrites(final List<ChecklistEntry> checklistEntries,
+      final SurveyResponseDto surveyResponse, final boolean isSkipped) {
 
-    final List<SurveyResponse> entities =
-        this.surveyResponseRepository.findByUserAndSurveyInstanceAndQuestionInOrderByVersionDesc(
-            user, instance, checklistQuestion.getEntries());
-
-    final boolean isSkipped = surveyResponse.getSkipped() == null ? false : surveyResponse.getSkipped();
+    final List<SurveyResponseWrite> result = new ArrayList<>(checklistEntries.size());
 
-    for (final ChecklistEntry entry : checklistQuestion.getEntries()) {
+    for (final ChecklistEntry entry : checklistEntries) {
 
       final Boolean answer = isSkipped
           ? null
@@ -234,191 +157,105 @@ public class SurveyResponseComponent {
               ? null
               : surveyResponse.getChecklistAnswer().get(entry.getId());
 
-      final Optional<SurveyResponse> entityOp =
-          entities.stream().filter(p -> p.getQuestion().getId().equals(entry.getId())).findFirst();
-
-      if (entityOp.isEmpty()) {
-
-        this.surveyResponseRepository.save(SurveyResponse.builder()
-            .question(entry)
-            .surveyInstance(instance)
-            .user(user)
-            .boolAnswer(answer == null ? false : answer)
-            .skipped(isSkipped)
-            .valid(true)
-            .build());
-
-      } else {
-
-        final SurveyResponse entity = entityOp.get();
-        // Invalidate existing entity
-        this.surveyResponseRepository.save(entity.toBuilder()
-            .valid(false)
-            .build());
-        // Add new version
-        this.surveyResponseRepository.save(entity.newVersion()
-            .boolAnswer(answer == null ? false : answer)
-            .skipped(isSkipped)
-            .valid(true)
-            .build());
-      }
+      result.add(SurveyResponseWrite.builder()
+          .question(entry)
+          .boolAnswer(answer == null ? false : answer)
+          .skipped(isSkipped)
+          .build());
     }
-  }
 
-  private final void storeChoiceResponse(
-      final SurveyResponseDto surveyResponse,
-      final User user,
-      final SurveyInstance instance,
-      final Question question) {
+    return result;
+  }
 
-    final List<Answer> existingAnswers = new ArrayList<>();
+  /**
+   * Resolves the selected answers from the compiled graph, which already holds the answers of each
+   * choice question. Hence selecting answers does not require any further queries.
+   */
+  private List<Answer> getAnswers(final SurveyGraph graph, final int index, final SurveyResponseDto surveyResponse) {
 
-    final boolean isSkipped = surveyResponse.getSkipped() == null ? false : surveyResponse.getSkipped();
+    final List<Answer> existingAnswers = new ArrayList<>(surveyResponse.getAnswerIds().size());
 
-    if (!isSkipped) {
-      for (final Long answerId : surveyResponse.getAnswerIds()) {
+    for (final Long answerId : surveyResponse.getAnswerIds()) {
 
-        final Optional<Answer> answerOp = this.answerRepository.findById(answerId);
+      final Answer answer = graph.getAnswer(index, answerId);
 
-        if (answerOp.isEmpty())
-          throw new IllegalStateException("Unexpected state: Could not find answer entity for id: " + answerId);
+      if (answer == null)
+        throw new IllegalStateException("Unexpected state: Could not find answer entity for id: " + answerId);
 
-        existingAnswers.add(answerOp.get());
-      }
+      existingAnswers.add(answer);
     }
 
-    final Optional<SurveyResponse> entityOp =
-        this.surveyResponseRepository.findTopByUserAndSurveyInstanceAndQuestionOrderByVersionDesc(
-            user, instance, question);
-
-    if (entityOp.isEmpty()) {
-
-      this.surveyResponseRepository.save(SurveyResponse.builder()
-          .question(question)
-          .surveyInstance(instance)
-          .user(user)
-          .answers(isSkipped ? null : existingAnswers)
-          .skipped(isSkipped)
-          .valid(true)
-          .build());
-
-    } else {
-
-      final SurveyResponse entity = entityOp.get();
-      // Invalidate existing entity
-      this.surveyResponseRepository.save(entity.toBuilder()
-          .valid(false)
-          .build());
-      // Add new version
-      this.surveyResponseRepository.save(entity.newVersion()
-          .answers(isSkipped ? null : existingAnswers)
-          .skipped(isSkipped)
-          .valid(true)
-          .build());
-    }
+    return existingAnswers;
   }
 
-  private final void storeNumberResponse(
-      final SurveyResponseDto surveyResponse,
-      final User user,
-      final SurveyInstance instance,
-      final Question question) {
-
-    final Optional<SurveyResponse> entityOp =
-        this.surveyResponseRepository.findTopByUserAndSurveyInstanceAndQuestionOrderByVersionDesc(
-            user, instance, question);
-
-    final boolean isSkipped = surveyResponse.getSkipped() == null ? false : surveyResponse.getSkipped();
+  /**
+   * Inserts the specified writes as new response versions. The previous versions as well as the
+   * responses to the specified successive questions get invalidated by a single bulk update before.
+   * The versions of the new responses are taken from the specified supplier, so the previous
+   * versions do not have to be read.
+   *
+   * @param user the {@link User}
+   * @param instance the {@link SurveyInstance}
+   * @param writes the {@link SurveyResponseWrite}s to insert
+   * @param successorIds the ids of the questions, whose responses must be invalidated additionally
+   * @param versions the supplier of the versions of the new responses
+   */
+  private void write(final User user, final SurveyInstance instance, final List<SurveyResponseWrite> writes,
+      final List<Long> successorIds, final IntSupplier versions) {
 
-    if (entityOp.isEmpty()) {
+    final List<Long> questionIds = new ArrayList<>(writes.size() + successorIds.size());
+    for (final SurveyResponseWrite write : writes)
+      questionIds.add(write.getQuestion().getId());
 
-      this.surveyResponseRepository.save(SurveyResponse.builder()
-          .question(question)
-          .surveyInstance(instance)
-          .user(user)
-          .numberAnswer(isSkipped ? null : surveyResponse.getNumberAnswer())
-          .skipped(isSkipped)
-          .valid(true)
-          .build());
+    questionIds.addAll(successorIds);
 
-    } else {
+    if (!questionIds.isEmpty()) {
 
-      final SurveyResponse entity = entityOp.get();
-      // Invalidate existing entity
-      this.surveyResponseRepository.save(entity.toBuilder()
-          .valid(false)
-          .build());
-      // Add new version
-      this.surveyResponseRepository.save(entity.newVersion()
-          .numberAnswer(isSkipped ? null : surveyResponse.getNumberAnswer())
-          .skipped(isSkipped)
-          .valid(true)
-          .build());
+      final int count = this.surveyResponseVersionRepository.invalidate(user, instance, questionIds);
+      LOG.debug("Invalidated {} survey responses of {} questions.", count, questionIds.size());
     }
-  }
 
-  private final void storeTextResponse(
-      final SurveyResponseDto surveyResponse,
-      final User user,
-      final SurveyInstance instance,
-      final Question question) {
-
-    final Optional<SurveyResponse> entityOp =
-        this.surveyResponseRepository.findTopByUserAndSurveyInstanceAndQuestionOrderByVersionDesc(
-            user, instance, question);
-
-    final boolean isSkipped = surveyResponse.getSkipped() == null ? false : surveyResponse.getSkipped();
+    final List<SurveyResponse> entities = new ArrayList<>(writes.size());
 
-    if (entityOp.isEmpty()) {
+    for (final SurveyResponseWrite write : writes) {
 
-      this.surveyResponseRepository.save(SurveyResponse.builder()
-          .question(question)
+      entities.add(SurveyResponse.builder()
+          .question(write.getQuestion())
           .surveyInstance(instance)
           .user(user)
-          .textAnswer(isSkipped ? null : surveyResponse.getTextAnswer())
-          .skipped(isSkipped)
-          .valid(true)
-          .build());
-
-    } else {
-
-      final SurveyResponse entity = entityOp.get();
-      // Invalidate existing entity
-      this.surveyResponseRepository.save(entity.toBuilder()
-          .valid(false)
-          .build());
-      // Add new version
-      this.surveyResponseRepository.save(entity.newVersion()
-          .textAnswer(isSkipped ? null : surveyResponse.getTextAnswer())
-          .skipped(isSkipped)
+          .version(versions.getAsInt())
+          .boolAnswer(write.getBoolAnswer())
+          .numberAnswer(write.getNumberAnswer())
+          .textAnswer(write.getTextAnswer())
+          .answers(write.getAnswers())
+          .skipped(write.isSkipped())
           .valid(true)
           .build());
     }
+
+    this.surveyResponseRepository.saveAll(entities);
   }
 
-  private Question getNextSubQuestion(final BooleanQuestion question, final SurveyResponseDto response) {
+  private Question getNextBooleanSubQuestion(final SurveyGraph graph, final int index,
+      final SurveyResponseDto response) {
 
-    if (!question.hasContainer()
-        || question.getContainer().getQuestions() == null
-        || question.getContainer().getQuestions().isEmpty()
-        || question.isOptional() && Boolean.TRUE.equals(response.getSkipped())
-        || !question.getContainer().getDependsOn().equals(response.getBoolAnswer()))
+    if (graph.getFirstChild(index) == SurveyGraph.NONE
+        || graph.isOptional(index) && Boolean.TRUE.equals(response.getSkipped())
+        || !Objects.equals(graph.getBoolDependsOn(index), response.getBoolAnswer()))
       return null;
 
-    return question.getContainer().getQuestions().get(0);
+    return graph.getQuestion(graph.getFirstChild(index));
   }
 
-  private Question getNextSubQuestion(final ChoiceQuestion question, final SurveyResponseDto response) {
+  private Question getNextChoiceSubQuestion(final SurveyGraph graph, final int index,
+      final SurveyResponseDto response) {
 
-    if (!question.hasContainer()
-        || question.getContainer().getQuestions() == null
-        || question.getContainer().getQuestions().isEmpty()
-        || question.getContainer().getDependsOn() == null
-        || question.getContainer().getDependsOn().isEmpty()
-        || question.isOptional() && Boolean.TRUE.equals(response.getSkipped())
-        || question.getContainer().getDependsOn().stream().noneMatch(p -> response.getAnswerIds().contains(p.getId())))
+    if (graph.getFirstChild(index) == SurveyGraph.NONE
+        || !graph.hasChoiceDependsOn(index)
+        || graph.isOptional(index) && Boolean.TRUE.equals(response.getSkipped())
+        || !graph.isChoiceDependsOn(index, response.getAnswerIds()))
       return null;
 
-    return question.getContainer().getQuestions().get(0);
+    return graph.getQuestion(graph.getFirstChild(index));
   }
 }
@@ -0,0 +1,113 @@
+/**
+ *
+ */
+package one.tracking.framework.component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import one.tracking.framework.filter.UserExistenceCheck;
+import one.tracking.framework.repo.UserIdRepository;
+import one.tracking.framework.repo.UserRepository;
+
+/**
+ * Caches the existence of users, so authenticated requests do not require a database round trip.
+ * The cache gets warmed up with all existing users on startup. Existing users are verified again
+ * after the configured time to live, so deleted users will be noticed. Unknown users are remembered
+ * for a shorter time to live, so users created by other services will be noticed soon. This service
+ * does neither create nor delete users, hence entries are only refreshed on lookups after they have
+ * expired and the full set of users is only loaded on startup.
+ *
+ * @author Marko Voß
+ *
+ */
+@Component
+public class UserExistenceComponent implements UserExistenceCheck {
+
+  private static final Logger LOG = LoggerFactory.getLogger(UserExistenceComponent.class);
+
+  /*
+   * The expiration of each entry by user id
+   */
+  private final Map<String, Instant> existing = new ConcurrentHashMap<>();
+
+  private final Map<String, Instant> missing = new ConcurrentHashMap<>();
+
+  @Value("${app.user.cache.timeToLive:300}")
+  private long timeToLive;
+
+  @Value("${app.user.cache.negativeTimeToLive:10}")
+  private long negativeTimeToLive;
+
+  @Value("${app.user.cache.warmUp:true}")
+  private boolean warmUp;
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private UserIdRepository userIdRepository;
+
+  @Override
+  public boolean exists(final String userId) {
+
+    final Instant now = Instant.now();
+
+    if (isValid(this.existing.get(userId), now))
+      return true;
+
+    if (isValid(this.missing.get(userId), now))
+      return false;
+
+    final boolean exists = this.userRepository.existsById(userId);
+
+    if (exists) {
+      this.existing.put(userId, now.plusSeconds(this.timeToLive));
+      this.missing.remove(userId);
+
+    } else {
+      this.existing.remove(userId);
+      if (this.negativeTimeToLive > 0)
+        this.missing.put(userId, now.plusSeconds(this.negativeTimeToLive));
+    }
+
+    return exists;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void warmUp() {
+
+    if (!this.warmUp || this.timeToLive <= 0)
+      return;
+
+    final List<String> userIds = this.userIdRepository.findAllIds();
+    final Instant expiresAt = Instant.now().plusSeconds(this.timeToLive);
+
+    for (final String userId : userIds) {
+      this.existing.put(userId, expiresAt);
+    }
+
+    LOG.info("Warmed up user existence cache with {} users.", userIds.size());
+  }
+
+  @Scheduled(fixedDelayString = "${app.user.cache.eviction.delay:60000}")
+  public void evictExpired() {
+
+    final Instant now = Instant.now();
+    this.existing.values().removeIf(p -> !now.isBefore(p));
+    this.missing.values().removeIf(p -> !now.isBefore(p));
+  }
+
+  private static boolean isValid(final Instant expiresAt, final Instant now) {
+    return expiresAt != null && now.isBefore(expiresAt);
+  }
+}
@@ -0,0 +1,17 @@
+/**
+ *
+ */
+package one.tracking.framework.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * @author Marko Voß
+ *
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+
+}
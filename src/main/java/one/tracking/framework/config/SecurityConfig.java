@@ -3,15 +3,18 @@
  */
 package one.tracking.framework.config;
 
+import java.time.Duration;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import one.tracking.framework.filter.AuthenticationCache;
 import one.tracking.framework.filter.BearerAuthenticationFilter;
-import one.tracking.framework.repo.UserRepository;
+import one.tracking.framework.filter.UserExistenceCheck;
 import one.tracking.framework.support.JWTHelper;
 
 /**
@@ -30,7 +33,13 @@ public class SecurityConfig {
     private JWTHelper jwtHelper;
 
     @Autowired
-    private UserRepository userRepository;
+    private UserExistenceCheck userExistenceCheck;
+
+    @Value("${app.token.cache.size:10000}")
+    private int tokenCacheSize;
+
+    @Value("${app.token.cache.timeToLive:3600}")
+    private long tokenCacheTimeToLive;
 
     @Override
     protected void configure(final HttpSecurity http) throws Exception {
@@ -53,14 +62,12 @@ public class SecurityConfig {
 
     public BearerAuthenticationFilter bearerAuthenticationFilter() throws Exception {
 
-      return new BearerAuthenticationFilter(authenticationManager(), this.jwtHelper) {
-
-        @Override
-        protected boolean checkIfUserExists(final String userId) {
-          return StandardSecurityConfig.this.userRepository.existsById(userId);
-        }
+      final AuthenticationCache authenticationCache = this.tokenCacheSize > 0
+          ? new AuthenticationCache(this.tokenCacheSize, Duration.ofSeconds(this.tokenCacheTimeToLive))
+          : null;
 
-      };
+      return new BearerAuthenticationFilter(authenticationManager(), this.jwtHelper, this.userExistenceCheck,
+          authenticationCache);
     }
   }
 }
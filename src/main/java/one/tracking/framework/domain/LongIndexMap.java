@@ -0,0 +1,86 @@
+/**
+ *
+ */
+package one.tracking.framework.domain;
+
+import java.util.Arrays;
+
+/**
+ * Immutable open addressing hash map with primitive <code>long</code> keys and non-negative
+ * <code>int</code> values. Collisions are resolved by linear probing. Used to map question ids to
+ * their index within a {@link SurveyGraph} without boxing.
+ *
+ * @author Marko Voß
+ *
+ */
+final class LongIndexMap {
+
+  private static final int FREE = -1;
+
+  private static final long PHI = 0x9E3779B97F4A7C15L;
+
+  private final long[] keys;
+
+  private final int[] values;
+
+  private final int mask;
+
+  private final int shift;
+
+  /**
+   * @param keys the keys, which will be mapped to their position within the specified array
+   */
+  LongIndexMap(final long[] keys) {
+
+    // Keep the load factor at or below 0.5
+    final int capacity = Integer.highestOneBit(Math.max(2, keys.length) * 4 - 1);
+
+    this.keys = new long[capacity];
+    this.values = new int[capacity];
+    this.mask = capacity - 1;
+    this.shift = Long.numberOfLeadingZeros(this.mask);
+
+    Arrays.fill(this.values, FREE);
+
+    for (int i = 0; i < keys.length; i++) {
+
+      int slot = slot(keys[i]);
+
+      while (this.values[slot] != FREE) {
+
+        if (this.keys[slot] == keys[i])
+          throw new IllegalArgumentException("Duplicate key: " + keys[i]);
+
+        slot = slot + 1 & this.mask;
+      }
+
+      this.keys[slot] = keys[i];
+      this.values[slot] = i;
+    }
+  }
+
+  /**
+   * @param key the key
+   * @param defaultValue the value to return if the key does not exist
+   * @return the value mapped to the key or the specified default value
+   */
+  int get(final long key, final int defaultValue) {
+
+    int slot = slot(key);
+
+    while (this.values[slot] != FREE) {
+
+      if (this.keys[slot] == key)
+        return this.values[slot];
+
+      slot = slot + 1 & this.mask;
+    }
+
+    return defaultValue;
+  }
+
+  private int slot(final long key) {
+    // Fibonacci hashing spreads sequential database ids over the whole table
+    return (int) (key * PHI >>> this.shift) & this.mask;
+  }
+}
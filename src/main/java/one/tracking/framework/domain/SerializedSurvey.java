@@ -0,0 +1,80 @@
+/**
+ *
+ */
+package one.tracking.framework.domain;
+
+import java.time.Instant;
+import one.tracking.framework.dto.meta.SurveyDto;
+
+/**
+ * Immutable JSON representation of a single released survey version as returned by
+ * <code>GET /survey/{nameId}</code>. Holds the UTF-8 encoded {@link SurveyDto} as well as its gzip
+ * compressed variant, so both can be written to the response without mapping or serializing the
+ * survey again. The byte arrays are shared and must not be modified.
+ *
+ * @author Marko Voß
+ *
+ */
+public final class SerializedSurvey {
+
+  private final Long surveyId;
+
+  private final String nameId;
+
+  private final Integer version;
+
+  private final byte[] json;
+
+  private final byte[] gzip;
+
+  private final Instant lastModified;
+
+  public SerializedSurvey(final Long surveyId, final String nameId, final Integer version, final byte[] json,
+      final byte[] gzip, final Instant lastModified) {
+    this.surveyId = surveyId;
+    this.nameId = nameId;
+    this.version = version;
+    this.json = json;
+    this.gzip = gzip;
+    this.lastModified = lastModified;
+  }
+
+  public Long getSurveyId() {
+    return this.surveyId;
+  }
+
+  public String getNameId() {
+    return this.nameId;
+  }
+
+  public Integer getVersion() {
+    return this.version;
+  }
+
+  /**
+   * @return the UTF-8 encoded JSON
+   */
+  public byte[] getJson() {
+    return this.json;
+  }
+
+  /**
+   * @return the gzip compressed UTF-8 encoded JSON
+   */
+  public byte[] getGzip() {
+    return this.gzip;
+  }
+
+  /**
+   * @return the point in time the graph of the survey version has been compiled
+   */
+  public Instant getLastModified() {
+    return this.lastModified;
+  }
+
+  @Override
+  public String toString() {
+    return "SerializedSurvey [surveyId=" + this.surveyId + ", nameId=" + this.nameId + ", version=" + this.version
+        + ", json=" + this.json.length + " bytes, gzip=" + this.gzip.length + " bytes]";
+  }
+}
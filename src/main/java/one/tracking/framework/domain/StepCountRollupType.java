@@ -0,0 +1,71 @@
+/**
+ *
+ */
+package one.tracking.framework.domain;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * The time buckets of step count rollups. Buckets are aligned to UTC. Step counts spanning multiple
+ * buckets are distributed evenly over their interval.
+ *
+ * @author Marko Voß
+ *
+ */
+public enum StepCountRollupType {
+
+  DAILY(Duration.ofDays(1)) {
+
+    @Override
+    public Instant getStart(final Instant instant) {
+      return instant.truncatedTo(ChronoUnit.DAYS);
+    }
+  },
+
+  /**
+   * Weeks start on monday according to ISO-8601.
+   */
+  WEEKLY(Duration.ofDays(7)) {
+
+    @Override
+    public Instant getStart(final Instant instant) {
+      return LocalDate.ofInstant(instant, ZoneOffset.UTC)
+          .with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))
+          .atStartOfDay(ZoneOffset.UTC)
+          .toInstant();
+    }
+  };
+
+  private final Duration duration;
+
+  private StepCountRollupType(final Duration duration) {
+    this.duration = duration;
+  }
+
+  /**
+   * @param instant the instant
+   * @return the start of the bucket containing the specified instant
+   */
+  public abstract Instant getStart(Instant instant);
+
+  /**
+   * @return the duration of a bucket
+   */
+  public Duration getDuration() {
+    return this.duration;
+  }
+
+  /**
+   * @param start the start of a bucket
+   * @return the end of the bucket (exclusive)
+   */
+  public Instant getEnd(final Instant start) {
+    return start.plus(this.duration);
+  }
+}
@@ -0,0 +1,211 @@
+/**
+ *
+ */
+package one.tracking.framework.domain;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import lombok.Data;
+
+/**
+ * Non-overlapping timeline of the step counts of a user. Each step count is considered to be
+ * evenly distributed over its interval. Where step counts overlap, e.g. hourly and daily step counts
+ * of different devices, the step count with the highest rate wins. The timeline is therefore the
+ * pointwise maximum rate of all added step counts, which does not depend on the order in which step
+ * counts are added.
+ * <p>
+ * The timeline is stored as sorted segments of the same rate. Adding a step count only touches the
+ * segments overlapping its interval. Adjacent segments of the same rate are merged, so the
+ * segments of a timeline are unique regardless of how it was built.
+ * </p>
+ * Times are milliseconds since epoch. Step counts of an empty interval do not cover any time and
+ * are ignored.
+ *
+ * @author Marko Voß
+ *
+ */
+public class StepCountTimeline {
+
+  private final NavigableMap<Long, Segment> segments = new TreeMap<>();
+
+  public StepCountTimeline() {}
+
+  /**
+   * @param segments existing non-overlapping segments of a timeline
+   */
+  public StepCountTimeline(final Collection<Segment> segments) {
+    for (final Segment segment : segments) {
+      this.segments.put(segment.getStart(), segment);
+    }
+  }
+
+  /**
+   * Adds the specified step count to the timeline.
+   *
+   * @param start the start of the interval (inclusive)
+   * @param end the end of the interval (exclusive)
+   * @param count the step count of the interval
+   */
+  public void add(final long start, final long end, final int count) {
+
+    if (count < 0)
+      throw new IllegalArgumentException("Count must not be negative.");
+
+    if (end <= start)
+      return;
+
+    final long divisor = gcd(count, end - start);
+    final long rateCount = count / divisor;
+    final long rateDuration = (end - start) / divisor;
+
+    final List<Segment> pieces = new ArrayList<>();
+    long cursor = start;
+
+    final Iterator<Segment> iterator = overlapping(start, end).values().iterator();
+
+    while (iterator.hasNext()) {
+
+      final Segment segment = iterator.next();
+      iterator.remove();
+
+      if (segment.getStart() < start)
+        pieces.add(segment.withRange(segment.getStart(), start));
+
+      final long from = Math.max(segment.getStart(), start);
+      final long to = Math.min(segment.getEnd(), end);
+
+      if (cursor < from)
+        pieces.add(new Segment(cursor, from, rateCount, rateDuration));
+
+      if (compareRate(segment.getCount(), segment.getDuration(), rateCount, rateDuration) >= 0)
+        pieces.add(segment.withRange(from, to));
+      else
+        pieces.add(new Segment(from, to, rateCount, rateDuration));
+
+      if (segment.getEnd() > end)
+        pieces.add(segment.withRange(end, segment.getEnd()));
+
+      cursor = to;
+    }
+
+    if (cursor < end)
+      pieces.add(new Segment(cursor, end, rateCount, rateDuration));
+
+    // Merge with the adjacent segments of the same rate
+    final Map.Entry<Long, Segment> lower = this.segments.lowerEntry(start);
+    if (lower != null && lower.getValue().getEnd() == pieces.get(0).getStart()) {
+      pieces.add(0, lower.getValue());
+      this.segments.remove(lower.getKey());
+    }
+
+    final Segment higher = this.segments.get(pieces.get(pieces.size() - 1).getEnd());
+    if (higher != null) {
+      pieces.add(higher);
+      this.segments.remove(higher.getStart());
+    }
+
+    Segment current = pieces.get(0);
+
+    for (int i = 1; i < pieces.size(); i++) {
+
+      final Segment next = pieces.get(i);
+
+      if (current.getEnd() == next.getStart() && current.hasRateOf(next)) {
+        current = current.withRange(current.getStart(), next.getEnd());
+      } else {
+        this.segments.put(current.getStart(), current);
+        current = next;
+      }
+    }
+
+    this.segments.put(current.getStart(), current);
+  }
+
+  /**
+   * @param from the lower bound (inclusive)
+   * @param to the upper bound (exclusive)
+   * @return the step count within the specified range
+   */
+  public double sum(final long from, final long to) {
+
+    double sum = 0;
+
+    for (final Segment segment : overlapping(from, to).values()) {
+      sum += segment.getStepCount(Math.max(segment.getStart(), from), Math.min(segment.getEnd(), to));
+    }
+
+    return sum;
+  }
+
+  /**
+   * @return the segments ordered by their start
+   */
+  public Collection<Segment> getSegments() {
+    return this.segments.values();
+  }
+
+  private NavigableMap<Long, Segment> overlapping(final long start, final long end) {
+
+    final Map.Entry<Long, Segment> floor = this.segments.floorEntry(start);
+    final long from = floor != null && floor.getValue().getEnd() > start ? floor.getKey() : start;
+
+    return this.segments.subMap(from, true, end, false);
+  }
+
+  /**
+   * Compares the rates <code>count1 / duration1</code> and <code>count2 / duration2</code> without
+   * loss of precision by comparing the 128 bit products of the cross multiplication.
+   */
+  private static int compareRate(final long count1, final long duration1, final long count2,
+      final long duration2) {
+
+    final long high1 = Math.multiplyHigh(count1, duration2);
+    final long high2 = Math.multiplyHigh(count2, duration1);
+
+    if (high1 != high2)
+      return Long.compare(high1, high2);
+
+    return Long.compareUnsigned(count1 * duration2, count2 * duration1);
+  }
+
+  private static long gcd(final long a, final long b) {
+    return b == 0 ? a : gcd(b, a % b);
+  }
+
+  /**
+   * A range of the timeline with a constant rate of <code>count</code> steps per
+   * <code>duration</code> milliseconds. The rate is stored as reduced fraction, so segments of the
+   * same rate are equal.
+   */
+  @Data
+  public static class Segment {
+
+    private final long start;
+
+    private final long end;
+
+    private final long count;
+
+    private final long duration;
+
+    /**
+     * @return the step count of the specified range within this segment
+     */
+    public double getStepCount(final long from, final long to) {
+      return (double) this.count * (to - from) / this.duration;
+    }
+
+    private boolean hasRateOf(final Segment other) {
+      return this.count == other.count && this.duration == other.duration;
+    }
+
+    private Segment withRange(final long start, final long end) {
+      return new Segment(start, end, this.count, this.duration);
+    }
+  }
+}
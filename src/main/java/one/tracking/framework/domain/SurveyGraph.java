@@ -0,0 +1,615 @@
+/**
+ *
+ */
+package one.tracking.framework.domain;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import org.hibernate.Hibernate;
+import one.tracking.framework.entity.SurveyResponse;
+import one.tracking.framework.entity.meta.Answer;
+import one.tracking.framework.entity.meta.Survey;
+import one.tracking.framework.entity.meta.container.BooleanContainer;
+import one.tracking.framework.entity.meta.container.ChoiceContainer;
+import one.tracking.framework.entity.meta.question.BooleanQuestion;
+import one.tracking.framework.entity.meta.question.ChecklistEntry;
+import one.tracking.framework.entity.meta.question.ChecklistQuestion;
+import one.tracking.framework.entity.meta.question.ChoiceQuestion;
+import one.tracking.framework.entity.meta.question.NumberQuestion;
+import one.tracking.framework.entity.meta.question.Question;
+import one.tracking.framework.entity.meta.question.QuestionType;
+import one.tracking.framework.entity.meta.question.RangeQuestion;
+import one.tracking.framework.entity.meta.question.TextQuestion;
+
+/**
+ * Immutable, compiled representation of a single released {@link Survey} version.<br/>
+ * <br/>
+ * All questions of the survey including sub questions and checklist entries are stored in flat
+ * arrays, which are indexed by the position of the question in a depth-first (pre-order) traversal
+ * of the survey tree. The tree is navigated by parent, first child and next sibling tables, so
+ * seeking the next question does not require any database access. The retained {@link Question}, {@link Answer} and {@link Survey} entities are
+ * detached as soon as the compiling session has been closed. Hence they must only be used as
+ * association values and their lazy associations must not be accessed.
+ *
+ * @author Marko Voß
+ *
+ */
+public final class SurveyGraph {
+
+  /**
+   * Index value used if a question does not exist or does not have a parent question.
+   */
+  public static final int NONE = -1;
+
+  private static final int[] EMPTY = new int[0];
+
+  private static final Answer[] NO_ANSWERS = new Answer[0];
+
+  private final Survey survey;
+
+  private final String dependsOnNameId;
+
+  private final Long dependsOnId;
+
+  private final LongIndexMap indices;
+
+  private final Question[] questions;
+
+  private final QuestionType[] types;
+
+  private final boolean[] optional;
+
+  private final int[] parents;
+
+  private final int[] firstChildren;
+
+  private final int[] nextSiblings;
+
+  private final int[] topLevel;
+
+  private final int[][] entries;
+
+  private final Answer[][] answers;
+
+  private final boolean[] multiple;
+
+  private final Long[] defaultAnswerIds;
+
+  private final Boolean[] boolDependsOn;
+
+  private final Long[][] choiceDependsOn;
+
+  private final Integer[] minValues;
+
+  private final Integer[] maxValues;
+
+  private final Integer[] lengths;
+
+  private final Instant compiledAt;
+
+  private SurveyGraph(final Survey survey, final Compiler compiler) {
+
+    this.survey = survey;
+    this.compiledAt = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+    this.dependsOnId = survey.getDependsOn() == null ? null : survey.getDependsOn().getId();
+    this.dependsOnNameId = survey.getDependsOn() == null ? null : survey.getDependsOn().getNameId();
+
+    final int size = compiler.questions.size();
+
+    this.topLevel = compiler.topLevel;
+    this.questions = compiler.questions.toArray(new Question[size]);
+    this.entries = compiler.entries.toArray(new int[size][]);
+    this.types = new QuestionType[size];
+    this.optional = new boolean[size];
+    this.parents = new int[size];
+    this.firstChildren = new int[size];
+    this.nextSiblings = new int[size];
+    this.answers = new Answer[size][];
+    this.multiple = new boolean[size];
+    this.defaultAnswerIds = new Long[size];
+    this.boolDependsOn = new Boolean[size];
+    this.choiceDependsOn = new Long[size][];
+    this.minValues = new Integer[size];
+    this.maxValues = new Integer[size];
+    this.lengths = new Integer[size];
+
+    final long[] ids = new long[size];
+
+    Arrays.fill(this.nextSiblings, NONE);
+
+    for (int i = 0; i < size; i++) {
+
+      final Question question = this.questions[i];
+
+      ids[i] = question.getId();
+      this.types[i] = question.getType();
+      this.optional[i] = question.isOptional();
+      this.parents[i] = compiler.parents.get(i);
+
+      this.answers[i] = NO_ANSWERS;
+
+      final int[] children = compiler.children.get(i);
+      this.firstChildren[i] = children.length == 0 ? NONE : children[0];
+      link(children);
+
+      switch (question.getType()) {
+        case BOOL:
+          final BooleanContainer booleanContainer = ((BooleanQuestion) question).getContainer();
+          this.boolDependsOn[i] = booleanContainer == null ? null : booleanContainer.getDependsOn();
+          break;
+        case CHOICE:
+          final ChoiceQuestion choiceQuestion = (ChoiceQuestion) question;
+          final ChoiceContainer choiceContainer = choiceQuestion.getContainer();
+          this.multiple[i] = Boolean.TRUE.equals(choiceQuestion.getMultiple());
+          this.defaultAnswerIds[i] = choiceQuestion.getDefaultAnswer() == null ? null
+              : choiceQuestion.getDefaultAnswer().getId();
+          this.answers[i] = choiceQuestion.getAnswers() == null ? NO_ANSWERS
+              : choiceQuestion.getAnswers().stream().map(p -> (Answer) Hibernate.unproxy(p)).toArray(Answer[]::new);
+          this.choiceDependsOn[i] = choiceContainer == null || choiceContainer.getDependsOn() == null ? null
+              : choiceContainer.getDependsOn().stream().map(Answer::getId).toArray(Long[]::new);
+          break;
+        case RANGE:
+          this.minValues[i] = ((RangeQuestion) question).getMinValue();
+          this.maxValues[i] = ((RangeQuestion) question).getMaxValue();
+          break;
+        case NUMBER:
+          this.minValues[i] = ((NumberQuestion) question).getMinValue();
+          this.maxValues[i] = ((NumberQuestion) question).getMaxValue();
+          break;
+        case TEXT:
+          this.lengths[i] = ((TextQuestion) question).getLength();
+          break;
+        default:
+      }
+    }
+
+    link(this.topLevel);
+    this.indices = new LongIndexMap(ids);
+  }
+
+  private void link(final int[] siblings) {
+
+    for (int i = 1; i < siblings.length; i++)
+      this.nextSiblings[siblings[i - 1]] = siblings[i];
+  }
+
+  /**
+   * Compiles the specified {@link Survey}. This method must be called within an active session as
+   * it does initialize all lazy associations of the survey tree.
+   *
+   * @param survey the {@link Survey} to compile
+   * @return the compiled {@link SurveyGraph}
+   */
+  public static final SurveyGraph compile(final Survey survey) {
+
+    final Survey entity = (Survey) Hibernate.unproxy(survey);
+    final Compiler compiler = new Compiler();
+    compiler.topLevel = compiler.add(entity.getQuestions(), NONE);
+    return new SurveyGraph(entity, compiler);
+  }
+
+  /**
+   * Calculates the {@link SurveyStatusType} based on the specified latest version of each response.
+   * The survey is {@link SurveyStatusType#COMPLETED} if every top level question owns a valid
+   * response. Checklist questions are considered to be answered if every entry owns a valid
+   * response.
+   *
+   * @param surveyResponses the latest version of each response of a survey instance
+   * @return the {@link SurveyStatusType}
+   */
+  public SurveyStatusType calculateStatus(final List<SurveyResponse> surveyResponses) {
+
+    if (surveyResponses == null || surveyResponses.isEmpty())
+      return SurveyStatusType.INCOMPLETE;
+
+    return calculateStatus(getAnswered(surveyResponses));
+  }
+
+  /**
+   * @param answered the answered top level questions by their position
+   * @return the {@link SurveyStatusType}
+   * @see #getAnswered(List)
+   */
+  public SurveyStatusType calculateStatus(final BitSet answered) {
+
+    return this.topLevel.length > 0 && answered.cardinality() == this.topLevel.length
+        ? SurveyStatusType.COMPLETED
+        : SurveyStatusType.INCOMPLETE;
+  }
+
+  /**
+   * Evaluates the answered top level questions based on the specified latest version of each
+   * response. The resulting set contains the position of each answered top level question. Checklist
+   * questions are considered to be answered if every entry owns a valid response.
+   *
+   * @param surveyResponses the latest version of each response of a survey instance
+   * @return the positions of the answered top level questions
+   */
+  public BitSet getAnswered(final List<SurveyResponse> surveyResponses) {
+
+    final BitSet result = new BitSet(this.topLevel.length);
+
+    if (surveyResponses == null || surveyResponses.isEmpty())
+      return result;
+
+    final boolean[] answered = new boolean[this.questions.length];
+
+    for (final SurveyResponse surveyResponse : surveyResponses) {
+
+      if (!surveyResponse.isValid())
+        continue;
+
+      final int index = indexOf(surveyResponse.getQuestion().getId());
+      if (index != NONE)
+        answered[index] = true;
+    }
+
+    for (int position = 0; position < this.topLevel.length; position++) {
+
+      final int index = this.topLevel[position];
+
+      if (this.types[index] != QuestionType.CHECKLIST) {
+
+        result.set(position, answered[index]);
+        continue;
+      }
+
+      boolean complete = this.entries[index].length > 0;
+
+      for (final int entry : this.entries[index]) {
+        complete &= answered[entry];
+      }
+
+      result.set(position, complete);
+    }
+
+    return result;
+  }
+
+  /**
+   * Applies a stored response to the specified set of answered top level questions. Storing a
+   * response invalidates the responses of all successive questions, hence every successive top level
+   * question becomes unanswered. Successive checklist questions keep their state, as the responses of
+   * checklist entries are not invalidated (see {@link #getSuccessorIds(int)}). The top level question
+   * itself becomes answered if the response was given to it directly.
+   *
+   * @param answered the answered top level questions by their position
+   * @param index the index of the question, which has been answered
+   * @see #getAnswered(List)
+   */
+  public void applyResponse(final BitSet answered, final int index) {
+
+    int root = index;
+
+    while (this.parents[root] != NONE)
+      root = this.parents[root];
+
+    // Top level questions are stored in ascending pre-order
+    final int position = Arrays.binarySearch(this.topLevel, root);
+
+    for (int next = position + 1; next < this.topLevel.length; next++) {
+      if (this.types[this.topLevel[next]] != QuestionType.CHECKLIST)
+        answered.clear(next);
+    }
+
+    if (root == index)
+      answered.set(position, this.types[index] != QuestionType.CHECKLIST || this.entries[index].length > 0);
+  }
+
+  /**
+   * @param questionId the id of the question
+   * @return the index of the question or {@link #NONE} if the question is not part of this survey
+   */
+  public int indexOf(final Long questionId) {
+
+    if (questionId == null)
+      return NONE;
+
+    return this.indices.get(questionId, NONE);
+  }
+
+  public Survey getSurvey() {
+    return this.survey;
+  }
+
+  public Long getSurveyId() {
+    return this.survey.getId();
+  }
+
+  /**
+   * @return the point in time this graph has been compiled, truncated to seconds
+   */
+  public Instant getCompiledAt() {
+    return this.compiledAt;
+  }
+
+  public String getNameId() {
+    return this.survey.getNameId();
+  }
+
+  public Integer getVersion() {
+    return this.survey.getVersion();
+  }
+
+  public String getTitle() {
+    return this.survey.getTitle();
+  }
+
+  public String getDescription() {
+    return this.survey.getDescription();
+  }
+
+  public Long getDependsOnId() {
+    return this.dependsOnId;
+  }
+
+  public String getDependsOnNameId() {
+    return this.dependsOnNameId;
+  }
+
+  /**
+   * @return the number of top level questions
+   */
+  public int getCountQuestions() {
+    return this.topLevel.length;
+  }
+
+  /**
+   * @return the total number of questions including sub questions and checklist entries
+   */
+  public int size() {
+    return this.questions.length;
+  }
+
+  public Question getQuestion(final int index) {
+    return this.questions[index];
+  }
+
+  public Long getQuestionId(final int index) {
+    return this.questions[index].getId();
+  }
+
+  public QuestionType getType(final int index) {
+    return this.types[index];
+  }
+
+  public boolean isOptional(final int index) {
+    return this.optional[index];
+  }
+
+  /**
+   * @param index the index of the question
+   * @return the index of the question owning the container of the specified question or
+   *         {@link #NONE} if the specified question is a top level question
+   */
+  public int getParent(final int index) {
+    return this.parents[index];
+  }
+
+  /**
+   * @param index the index of the question
+   * @return <code>true</code> if the specified question is part of a container, which is either the
+   *         survey itself or the container of a parent question. Checklist entries are not part of
+   *         any container.
+   */
+  public boolean isContained(final int index) {
+    return this.types[index] != QuestionType.CHECKLIST_ENTRY;
+  }
+
+  /**
+   * @param index the index of the question
+   * @return the index of the first sub question of the container owned by the specified question or
+   *         {@link #NONE} if the question does not own any sub questions
+   */
+  public int getFirstChild(final int index) {
+    return this.firstChildren[index];
+  }
+
+  /**
+   * @param index the index of the question
+   * @return the index of the next question within the same container or {@link #NONE} if the
+   *         specified question is the last one of its container
+   */
+  public int getNextSibling(final int index) {
+    return this.nextSiblings[index];
+  }
+
+  /**
+   * Returns the ids of all questions, which follow the specified question in survey order. These are
+   * the sub questions of the specified question and all successive questions of the question itself
+   * and of its parent questions. Due to the pre-order layout these are exactly the questions with a
+   * higher index. Checklist entries are not included.
+   *
+   * @param index the index of the question
+   * @return the ids of the following questions
+   */
+  public List<Long> getSuccessorIds(final int index) {
+
+    final List<Long> result = new ArrayList<>(this.questions.length - index);
+
+    for (int i = index + 1; i < this.questions.length; i++) {
+      if (isContained(i))
+        result.add(this.questions[i].getId());
+    }
+
+    return result;
+  }
+
+  /**
+   * @param index the index of the checklist question
+   * @return the entries of the checklist question in order
+   */
+  public List<ChecklistEntry> getEntries(final int index) {
+
+    if (this.entries[index].length == 0)
+      return Collections.emptyList();
+
+    final List<ChecklistEntry> result = new ArrayList<>(this.entries[index].length);
+    for (final int entry : this.entries[index])
+      result.add((ChecklistEntry) this.questions[entry]);
+
+    return result;
+  }
+
+  /**
+   * @param index the index of the checklist question
+   * @param questionId the id of the entry
+   * @return <code>true</code> if the specified id belongs to an entry of the checklist question
+   */
+  public boolean isEntry(final int index, final Long questionId) {
+
+    final int entry = indexOf(questionId);
+    return entry != NONE && this.parents[entry] == index && this.types[entry] == QuestionType.CHECKLIST_ENTRY;
+  }
+
+  /**
+   * @param index the index of the choice question
+   * @param answerId the id of the answer
+   * @return <code>true</code> if the specified answer belongs to the choice question
+   */
+  public boolean hasAnswer(final int index, final Long answerId) {
+    return getAnswer(index, answerId) != null;
+  }
+
+  /**
+   * @param index the index of the choice question
+   * @param answerId the id of the answer
+   * @return the {@link Answer} of the choice question with the specified id or <code>null</code> if
+   *         the answer does not belong to the choice question
+   */
+  public Answer getAnswer(final int index, final Long answerId) {
+
+    for (final Answer answer : this.answers[index]) {
+      if (answer.getId().equals(answerId))
+        return answer;
+    }
+    return null;
+  }
+
+  /**
+   * @param index the index of the choice question
+   * @return the answers of the choice question in order
+   */
+  public List<Answer> getAnswers(final int index) {
+    return Collections.unmodifiableList(Arrays.asList(this.answers[index]));
+  }
+
+  public Long getDefaultAnswerId(final int index) {
+    return this.defaultAnswerIds[index];
+  }
+
+  public boolean isMultiple(final int index) {
+    return this.multiple[index];
+  }
+
+  public Boolean getBoolDependsOn(final int index) {
+    return this.boolDependsOn[index];
+  }
+
+  /**
+   * @param index the index of the choice question
+   * @return <code>true</code> if the container of the choice question depends on at least one answer
+   */
+  public boolean hasChoiceDependsOn(final int index) {
+    return this.choiceDependsOn[index] != null && this.choiceDependsOn[index].length > 0;
+  }
+
+  /**
+   * @param index the index of the choice question
+   * @param answerIds the selected answer ids
+   * @return <code>true</code> if any of the selected answers satisfies the container dependency
+   */
+  public boolean isChoiceDependsOn(final int index, final List<Long> answerIds) {
+
+    if (!hasChoiceDependsOn(index) || answerIds == null)
+      return false;
+
+    for (final Long answerId : this.choiceDependsOn[index]) {
+      if (answerIds.contains(answerId))
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * @param index the index of the choice question
+   * @return the ids of the answers the container of the choice question depends on or an empty list
+   */
+  public List<Long> getChoiceDependsOn(final int index) {
+
+    if (!hasChoiceDependsOn(index))
+      return Collections.emptyList();
+
+    return Collections.unmodifiableList(Arrays.asList(this.choiceDependsOn[index]));
+  }
+
+  public Integer getMinValue(final int index) {
+    return this.minValues[index];
+  }
+
+  public Integer getMaxValue(final int index) {
+    return this.maxValues[index];
+  }
+
+  public Integer getLength(final int index) {
+    return this.lengths[index];
+  }
+
+  @Override
+  public String toString() {
+    return "SurveyGraph [nameId=" + getNameId() + ", version=" + getVersion() + ", size=" + size() + "]";
+  }
+
+  /**
+   * Collects the questions of a survey tree in pre-order. Checklist entries are added right after
+   * their checklist question.
+   */
+  private static final class Compiler {
+
+    private final List<Question> questions = new ArrayList<>();
+
+    private final List<Integer> parents = new ArrayList<>();
+
+    private final List<int[]> children = new ArrayList<>();
+
+    private final List<int[]> entries = new ArrayList<>();
+
+    private int[] topLevel;
+
+    private int[] add(final List<? extends Question> questions, final int parent) {
+
+      if (questions == null || questions.isEmpty())
+        return EMPTY;
+
+      final int[] result = new int[questions.size()];
+      for (int i = 0; i < result.length; i++)
+        result[i] = add(questions.get(i), parent);
+
+      return result;
+    }
+
+    private int add(final Question entity, final int parent) {
+
+      final Question question = (Question) Hibernate.unproxy(Objects.requireNonNull(entity));
+      final int index = this.questions.size();
+
+      this.questions.add(question);
+      this.parents.add(parent);
+      this.children.add(EMPTY);
+      this.entries.add(EMPTY);
+
+      if (question.getType() == QuestionType.CHECKLIST)
+        this.entries.set(index, add(((ChecklistQuestion) question).getEntries(), index));
+      else
+        this.children.set(index, add(question.getSubQuestions(), index));
+
+      return index;
+    }
+  }
+}
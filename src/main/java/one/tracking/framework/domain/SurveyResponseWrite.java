@@ -0,0 +1,34 @@
+/**
+ *
+ */
+package one.tracking.framework.domain;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.Data;
+import one.tracking.framework.entity.meta.Answer;
+import one.tracking.framework.entity.meta.question.Question;
+
+/**
+ * A typed value to be written as a new response version of a single question. Only the value
+ * matching the type of the question is set.
+ *
+ * @author Marko Voß
+ *
+ */
+@Data
+@Builder
+public class SurveyResponseWrite {
+
+  private Question question;
+
+  private boolean skipped;
+
+  private Boolean boolAnswer;
+
+  private Integer numberAnswer;
+
+  private String textAnswer;
+
+  private List<Answer> answers;
+}
@@ -0,0 +1,56 @@
+/**
+ *
+ */
+package one.tracking.framework.domain;
+
+import one.tracking.framework.entity.meta.Survey;
+
+/**
+ * Identifies a single version of a {@link Survey} without loading the survey itself.
+ *
+ * @author Marko Voß
+ *
+ */
+public final class SurveyVersion {
+
+  private final Long surveyId;
+
+  private final String nameId;
+
+  private final Integer version;
+
+  public SurveyVersion(final Long surveyId, final String nameId, final Integer version) {
+    this.surveyId = surveyId;
+    this.nameId = nameId;
+    this.version = version;
+  }
+
+  public Long getSurveyId() {
+    return this.surveyId;
+  }
+
+  public String getNameId() {
+    return this.nameId;
+  }
+
+  public Integer getVersion() {
+    return this.version;
+  }
+
+  /**
+   * The survey id does identify exactly one version of a survey, whose definition never changes once
+   * it has been released. Hence the tag is suitable as strong entity tag of the survey definition.
+   * The gzip encoded representation consists of different bytes and gets a tag of its own.
+   *
+   * @param gzip whether the tag of the gzip encoded representation shall be returned
+   * @return the quoted entity tag of this survey version
+   */
+  public String getETag(final boolean gzip) {
+    return "\"" + this.surveyId + "-" + this.version + (gzip ? "-gzip" : "") + "\"";
+  }
+
+  @Override
+  public String toString() {
+    return "SurveyVersion [surveyId=" + this.surveyId + ", nameId=" + this.nameId + ", version=" + this.version + "]";
+  }
+}
@@ -3,8 +3,9 @@
  */
 package one.tracking.framework.dto;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import org.hibernate.Hibernate;
 import one.tracking.framework.dto.meta.AnswerDto;
 import one.tracking.framework.dto.meta.SurveyDto;
 import one.tracking.framework.dto.meta.container.BooleanContainerDto;
@@ -27,15 +28,41 @@ import one.tracking.framework.entity.meta.question.ChecklistQuestion;
 import one.tracking.framework.entity.meta.question.ChoiceQuestion;
 import one.tracking.framework.entity.meta.question.NumberQuestion;
 import one.tracking.framework.entity.meta.question.Question;
+import one.tracking.framework.entity.meta.question.QuestionType;
 import one.tracking.framework.entity.meta.question.RangeQuestion;
 import one.tracking.framework.entity.meta.question.TextQuestion;
 
 /**
+ * Maps the survey entities to their DTOs. Questions are dispatched on their {@link QuestionType}
+ * through a table instead of a chain of type checks. DTOs are created by their constructors and
+ * lists are created with their final size, so mapping does not allocate any builders or
+ * intermediate collections.
+ *
  * @author Marko Voß
  *
  */
 public abstract class DtoMapper {
 
+  @FunctionalInterface
+  private interface QuestionMapper {
+
+    QuestionDto map(Question entity);
+  }
+
+  /*
+   * Indexed by QuestionType#ordinal(). Checklist entries are mapped by their checklist question only.
+   */
+  private static final QuestionMapper[] QUESTION_MAPPERS = new QuestionMapper[QuestionType.values().length];
+
+  static {
+    QUESTION_MAPPERS[QuestionType.BOOL.ordinal()] = entity -> map((BooleanQuestion) entity);
+    QUESTION_MAPPERS[QuestionType.CHOICE.ordinal()] = entity -> map((ChoiceQuestion) entity);
+    QUESTION_MAPPERS[QuestionType.RANGE.ordinal()] = entity -> map((RangeQuestion) entity);
+    QUESTION_MAPPERS[QuestionType.TEXT.ordinal()] = entity -> map((TextQuestion) entity);
+    QUESTION_MAPPERS[QuestionType.NUMBER.ordinal()] = entity -> map((NumberQuestion) entity);
+    QUESTION_MAPPERS[QuestionType.CHECKLIST.ordinal()] = entity -> map((ChecklistQuestion) entity);
+  }
+
   /**
    *
    * @param entity
@@ -43,15 +70,15 @@ public abstract class DtoMapper {
    */
   public static final SurveyDto map(final Survey entity) {
 
-    return SurveyDto.builder()
-        .id(entity.getId())
-        .dependsOn(entity.getDependsOn() == null ? null : entity.getDependsOn().getNameId())
-        .nameId(entity.getNameId())
-        .title(entity.getTitle())
-        .description(entity.getDescription())
-        .version(entity.getVersion())
-        .questions(entity.getQuestions().stream().map(DtoMapper::map).collect(Collectors.toList()))
-        .build();
+    final SurveyDto dto = new SurveyDto();
+    dto.setId(entity.getId());
+    dto.setDependsOn(entity.getDependsOn() == null ? null : entity.getDependsOn().getNameId());
+    dto.setNameId(entity.getNameId());
+    dto.setTitle(entity.getTitle());
+    dto.setDescription(entity.getDescription());
+    dto.setVersion(entity.getVersion());
+    dto.setQuestions(mapQuestions(entity.getQuestions()));
+    return dto;
   }
 
   /**
@@ -61,20 +88,10 @@ public abstract class DtoMapper {
    */
   public static final QuestionDto map(final Question entity) {
 
-    if (entity instanceof BooleanQuestion)
-      return map((BooleanQuestion) entity);
-    if (entity instanceof ChoiceQuestion)
-      return map((ChoiceQuestion) entity);
-    if (entity instanceof RangeQuestion)
-      return map((RangeQuestion) entity);
-    if (entity instanceof TextQuestion)
-      return map((TextQuestion) entity);
-    if (entity instanceof NumberQuestion)
-      return map((NumberQuestion) entity);
-    if (entity instanceof ChecklistQuestion)
-      return map((ChecklistQuestion) entity);
+    final Question question = (Question) Hibernate.unproxy(entity);
+    final QuestionMapper mapper = QUESTION_MAPPERS[question.getType().ordinal()];
 
-    return null;
+    return mapper == null ? null : mapper.map(question);
   }
 
   /**
@@ -84,14 +101,11 @@ public abstract class DtoMapper {
    */
   public static final BooleanQuestionDto map(final BooleanQuestion entity) {
 
-    return BooleanQuestionDto.builder()
-        .id(entity.getId())
-        .order(entity.getRanking())
-        .optional(entity.isOptional())
-        .question(entity.getQuestion())
-        .defaultAnswer(entity.getDefaultAnswer())
-        .container(map(entity.getContainer()))
-        .build();
+    final BooleanQuestionDto dto = new BooleanQuestionDto();
+    setQuestion(dto, entity);
+    dto.setDefaultAnswer(entity.getDefaultAnswer());
+    dto.setContainer(map(entity.getContainer()));
+    return dto;
   }
 
   /**
@@ -101,34 +115,42 @@ public abstract class DtoMapper {
    */
   public static final ChoiceQuestionDto map(final ChoiceQuestion entity) {
 
-    return ChoiceQuestionDto.builder()
-        .id(entity.getId())
-        .order(entity.getRanking())
-        .optional(entity.isOptional())
-        .question(entity.getQuestion())
-        .defaultAnswer(entity.getDefaultAnswer() == null ? null : entity.getDefaultAnswer().getId())
-        .answers(entity.getAnswers().stream().map(DtoMapper::map).collect(Collectors.toList()))
-        .multiple(entity.getMultiple())
-        .container(map(entity.getContainer()))
-        .build();
+    final List<Answer> answers = entity.getAnswers();
+    final List<AnswerDto> answerDtos = new ArrayList<>(answers.size());
+    for (final Answer answer : answers) {
+      answerDtos.add(map(answer));
+    }
+
+    final ChoiceQuestionDto dto = new ChoiceQuestionDto();
+    setQuestion(dto, entity);
+    dto.setDefaultAnswer(entity.getDefaultAnswer() == null ? null : entity.getDefaultAnswer().getId());
+    dto.setAnswers(answerDtos);
+    dto.setMultiple(entity.getMultiple());
+    dto.setContainer(map(entity.getContainer()));
+    return dto;
   }
 
   public static final ChecklistQuestionDto map(final ChecklistQuestion entity) {
-    return ChecklistQuestionDto.builder()
-        .id(entity.getId())
-        .order(entity.getRanking())
-        .optional(entity.isOptional())
-        .question(entity.getQuestion())
-        .entries(entity.getEntries().stream().map(DtoMapper::map).collect(Collectors.toList()))
-        .build();
+
+    final List<ChecklistEntry> entries = entity.getEntries();
+    final List<ChecklistEntryDto> entryDtos = new ArrayList<>(entries.size());
+    for (final ChecklistEntry entry : entries) {
+      entryDtos.add(map(entry));
+    }
+
+    final ChecklistQuestionDto dto = new ChecklistQuestionDto();
+    setQuestion(dto, entity);
+    dto.setEntries(entryDtos);
+    return dto;
   }
 
   public static final ChecklistEntryDto map(final ChecklistEntry entity) {
-    return ChecklistEntryDto.builder()
-        .id(entity.getId())
-        .order(entity.getRanking())
-        .question(entity.getQuestion())
-        .build();
+
+    final ChecklistEntryDto dto = new ChecklistEntryDto();
+    dto.setId(entity.getId());
+    dto.setOrder(entity.getRanking());
+    dto.setQuestion(entity.getQuestion());
+    return dto;
   }
 
   /**
@@ -138,17 +160,14 @@ public abstract class DtoMapper {
    */
   public static final RangeQuestionDto map(final RangeQuestion entity) {
 
-    return RangeQuestionDto.builder()
-        .id(entity.getId())
-        .order(entity.getRanking())
-        .optional(entity.isOptional())
-        .question(entity.getQuestion())
-        .defaultValue(entity.getDefaultAnswer())
-        .minValue(entity.getMinValue())
-        .maxValue(entity.getMaxValue())
-        .minText(entity.getMinText())
-        .maxText(entity.getMaxText())
-        .build();
+    final RangeQuestionDto dto = new RangeQuestionDto();
+    setQuestion(dto, entity);
+    dto.setDefaultValue(entity.getDefaultAnswer());
+    dto.setMinValue(entity.getMinValue());
+    dto.setMaxValue(entity.getMaxValue());
+    dto.setMinText(entity.getMinText());
+    dto.setMaxText(entity.getMaxText());
+    return dto;
   }
 
   /**
@@ -158,15 +177,12 @@ public abstract class DtoMapper {
    */
   public static final NumberQuestionDto map(final NumberQuestion entity) {
 
-    return NumberQuestionDto.builder()
-        .id(entity.getId())
-        .order(entity.getRanking())
-        .optional(entity.isOptional())
-        .question(entity.getQuestion())
-        .defaultValue(entity.getDefaultAnswer())
-        .minValue(entity.getMinValue())
-        .maxValue(entity.getMaxValue())
-        .build();
+    final NumberQuestionDto dto = new NumberQuestionDto();
+    setQuestion(dto, entity);
+    dto.setDefaultValue(entity.getDefaultAnswer());
+    dto.setMinValue(entity.getMinValue());
+    dto.setMaxValue(entity.getMaxValue());
+    return dto;
   }
 
   /**
@@ -176,14 +192,11 @@ public abstract class DtoMapper {
    */
   public static final TextQuestionDto map(final TextQuestion entity) {
 
-    return TextQuestionDto.builder()
-        .id(entity.getId())
-        .order(entity.getRanking())
-        .optional(entity.isOptional())
-        .question(entity.getQuestion())
-        .multiline(entity.isMultiline())
-        .length(entity.getLength())
-        .build();
+    final TextQuestionDto dto = new TextQuestionDto();
+    setQuestion(dto, entity);
+    dto.setMultiline(entity.isMultiline());
+    dto.setLength(entity.getLength());
+    return dto;
   }
 
   /**
@@ -196,10 +209,10 @@ public abstract class DtoMapper {
     if (entity == null || entity.getQuestions() == null || entity.getQuestions().isEmpty())
       return null;
 
-    return BooleanContainerDto.builder()
-        .boolDependsOn(entity.getDependsOn())
-        .subQuestions(map(entity.getQuestions()))
-        .build();
+    final BooleanContainerDto dto = new BooleanContainerDto();
+    dto.setBoolDependsOn(entity.getDependsOn());
+    dto.setSubQuestions(mapQuestions(entity.getQuestions()));
+    return dto;
   }
 
   /**
@@ -212,13 +225,19 @@ public abstract class DtoMapper {
     if (entity == null || entity.getQuestions() == null || entity.getQuestions().isEmpty())
       return null;
 
-    final List<Long> dependsOn = entity.getDependsOn() == null || entity.getDependsOn().isEmpty() ? null
-        : entity.getDependsOn().stream().map(c -> c.getId()).collect(Collectors.toList());
+    List<Long> dependsOn = null;
+
+    if (entity.getDependsOn() != null && !entity.getDependsOn().isEmpty()) {
+      dependsOn = new ArrayList<>(entity.getDependsOn().size());
+      for (final Answer answer : entity.getDependsOn()) {
+        dependsOn.add(answer.getId());
+      }
+    }
 
-    return ChoiceContainerDto.builder()
-        .choiceDependsOn(dependsOn)
-        .subQuestions(map(entity.getQuestions()))
-        .build();
+    final ChoiceContainerDto dto = new ChoiceContainerDto();
+    dto.setChoiceDependsOn(dependsOn);
+    dto.setSubQuestions(mapQuestions(entity.getQuestions()));
+    return dto;
   }
 
   /**
@@ -231,7 +250,7 @@ public abstract class DtoMapper {
     if (subQuestions == null || subQuestions.isEmpty())
       return null;
 
-    return subQuestions.stream().map(DtoMapper::map).collect(Collectors.toList());
+    return mapQuestions(subQuestions);
   }
 
   /**
@@ -240,9 +259,27 @@ public abstract class DtoMapper {
    * @return
    */
   public static final AnswerDto map(final Answer entity) {
-    return AnswerDto.builder()
-        .id(entity.getId())
-        .value(entity.getValue())
-        .build();
+
+    final AnswerDto dto = new AnswerDto();
+    dto.setId(entity.getId());
+    dto.setValue(entity.getValue());
+    return dto;
+  }
+
+  private static List<QuestionDto> mapQuestions(final List<? extends Question> questions) {
+
+    final List<QuestionDto> result = new ArrayList<>(questions.size());
+    for (final Question question : questions) {
+      result.add(map(question));
+    }
+    return result;
+  }
+
+  private static void setQuestion(final QuestionDto dto, final Question entity) {
+
+    dto.setId(entity.getId());
+    dto.setOrder(entity.getRanking());
+    dto.setOptional(entity.isOptional());
+    dto.setQuestion(entity.getQuestion());
   }
 }
@@ -0,0 +1,31 @@
+/**
+ *
+ */
+package one.tracking.framework.dto;
+
+import io.swagger.annotations.ApiModel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import one.tracking.framework.domain.StepCountRollupType;
+
+/**
+ * @author Marko Voß
+ *
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel
+public class StepCountRollupDto {
+
+  private StepCountRollupType type;
+
+  private Long count;
+
+  private Long startTime;
+
+  private Long endTime;
+}
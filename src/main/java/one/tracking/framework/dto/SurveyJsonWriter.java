@@ -0,0 +1,186 @@
+/**
+ *
+ */
+package one.tracking.framework.dto;
+
+import java.io.IOException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import one.tracking.framework.domain.SurveyGraph;
+import one.tracking.framework.dto.meta.SurveyDto;
+import one.tracking.framework.dto.meta.container.ContainerDto;
+import one.tracking.framework.dto.meta.question.QuestionDto;
+import one.tracking.framework.entity.meta.Answer;
+import one.tracking.framework.entity.meta.question.BooleanQuestion;
+import one.tracking.framework.entity.meta.question.ChecklistEntry;
+import one.tracking.framework.entity.meta.question.NumberQuestion;
+import one.tracking.framework.entity.meta.question.Question;
+import one.tracking.framework.entity.meta.question.QuestionType;
+import one.tracking.framework.entity.meta.question.RangeQuestion;
+import one.tracking.framework.entity.meta.question.TextQuestion;
+
+/**
+ * Writes the JSON representation of a {@link SurveyDto} directly from a compiled {@link SurveyGraph}
+ * to a {@link JsonGenerator}, so the DTO tree does not need to be created. The output is equal to
+ * the serialized result of {@link DtoMapper#map(one.tracking.framework.entity.meta.Survey)} including
+ * the <code>type</code> property of {@link QuestionDto} and {@link ContainerDto}. Absent values are
+ * omitted like by the <code>NON_ABSENT</code> inclusion of the application.
+ *
+ * @author Marko Voß
+ *
+ */
+public abstract class SurveyJsonWriter {
+
+  private static final String TYPE = "type";
+
+  /**
+   * Writes the survey as JSON object. The specified {@link JsonGenerator} does not get flushed or
+   * closed.
+   *
+   * @param graph the {@link SurveyGraph}
+   * @param generator the {@link JsonGenerator}
+   * @throws IOException if writing fails
+   */
+  public static final void write(final SurveyGraph graph, final JsonGenerator generator) throws IOException {
+
+    generator.writeStartObject();
+    writeNumber(generator, "id", graph.getSurveyId());
+    writeString(generator, "dependsOn", graph.getDependsOnNameId());
+
+    generator.writeArrayFieldStart("questions");
+    // Due to the pre-order layout the first question is always the first top level question
+    int index = graph.size() == 0 ? SurveyGraph.NONE : 0;
+    while (index != SurveyGraph.NONE) {
+      writeQuestion(graph, index, generator);
+      index = graph.getNextSibling(index);
+    }
+    generator.writeEndArray();
+
+    writeString(generator, "nameId", graph.getNameId());
+    writeString(generator, "title", graph.getTitle());
+    writeString(generator, "description", graph.getDescription());
+    writeNumber(generator, "version", graph.getVersion());
+    generator.writeEndObject();
+  }
+
+  private static void writeQuestion(final SurveyGraph graph, final int index, final JsonGenerator generator)
+      throws IOException {
+
+    final Question question = graph.getQuestion(index);
+    final QuestionType type = graph.getType(index);
+
+    generator.writeStartObject();
+    generator.writeStringField(TYPE, type.name());
+    writeNumber(generator, "id", question.getId());
+    writeString(generator, "question", question.getQuestion());
+    writeNumber(generator, "order", question.getRanking());
+    generator.writeBooleanField("optional", graph.isOptional(index));
+
+    switch (type) {
+      case BOOL:
+        writeBoolean(generator, "defaultAnswer", ((BooleanQuestion) question).getDefaultAnswer());
+        writeContainer(graph, index, type, generator);
+        break;
+      case CHOICE:
+        generator.writeArrayFieldStart("answers");
+        for (final Answer answer : graph.getAnswers(index)) {
+          generator.writeStartObject();
+          writeNumber(generator, "id", answer.getId());
+          writeString(generator, "value", answer.getValue());
+          generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        writeNumber(generator, "defaultAnswer", graph.getDefaultAnswerId(index));
+        generator.writeBooleanField("multiple", graph.isMultiple(index));
+        writeContainer(graph, index, type, generator);
+        break;
+      case RANGE:
+        final RangeQuestion rangeQuestion = (RangeQuestion) question;
+        writeNumber(generator, "minValue", graph.getMinValue(index));
+        writeNumber(generator, "maxValue", graph.getMaxValue(index));
+        writeString(generator, "minText", rangeQuestion.getMinText());
+        writeString(generator, "maxText", rangeQuestion.getMaxText());
+        writeNumber(generator, "defaultValue", rangeQuestion.getDefaultAnswer());
+        break;
+      case NUMBER:
+        writeNumber(generator, "minValue", graph.getMinValue(index));
+        writeNumber(generator, "maxValue", graph.getMaxValue(index));
+        writeNumber(generator, "defaultValue", ((NumberQuestion) question).getDefaultAnswer());
+        break;
+      case TEXT:
+        generator.writeBooleanField("multiline", ((TextQuestion) question).isMultiline());
+        writeNumber(generator, "length", graph.getLength(index));
+        break;
+      case CHECKLIST:
+        generator.writeArrayFieldStart("entries");
+        for (final ChecklistEntry entry : graph.getEntries(index)) {
+          generator.writeStartObject();
+          generator.writeStringField(TYPE, QuestionType.CHECKLIST_ENTRY.name());
+          writeNumber(generator, "id", entry.getId());
+          writeString(generator, "question", entry.getQuestion());
+          writeNumber(generator, "order", entry.getRanking());
+          generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        break;
+      default:
+    }
+
+    generator.writeEndObject();
+  }
+
+  private static void writeContainer(final SurveyGraph graph, final int index, final QuestionType type,
+      final JsonGenerator generator) throws IOException {
+
+    final int firstChild = graph.getFirstChild(index);
+
+    // Containers without sub questions are not part of the DTO
+    if (firstChild == SurveyGraph.NONE)
+      return;
+
+    generator.writeObjectFieldStart("container");
+    generator.writeStringField(TYPE, type.name());
+
+    generator.writeArrayFieldStart("subQuestions");
+    for (int child = firstChild; child != SurveyGraph.NONE; child = graph.getNextSibling(child)) {
+      writeQuestion(graph, child, generator);
+    }
+    generator.writeEndArray();
+
+    if (type == QuestionType.BOOL) {
+      writeBoolean(generator, "boolDependsOn", graph.getBoolDependsOn(index));
+
+    } else if (graph.hasChoiceDependsOn(index)) {
+      generator.writeArrayFieldStart("choiceDependsOn");
+      for (final Long answerId : graph.getChoiceDependsOn(index)) {
+        generator.writeNumber(answerId);
+      }
+      generator.writeEndArray();
+    }
+
+    generator.writeEndObject();
+  }
+
+  private static void writeString(final JsonGenerator generator, final String name, final String value)
+      throws IOException {
+    if (value != null)
+      generator.writeStringField(name, value);
+  }
+
+  private static void writeNumber(final JsonGenerator generator, final String name, final Long value)
+      throws IOException {
+    if (value != null)
+      generator.writeNumberField(name, value);
+  }
+
+  private static void writeNumber(final JsonGenerator generator, final String name, final Integer value)
+      throws IOException {
+    if (value != null)
+      generator.writeNumberField(name, value);
+  }
+
+  private static void writeBoolean(final JsonGenerator generator, final String name, final Boolean value)
+      throws IOException {
+    if (value != null)
+      generator.writeBooleanField(name, value);
+  }
+}
@@ -0,0 +1,34 @@
+/**
+ *
+ */
+package one.tracking.framework.dto;
+
+import io.swagger.annotations.ApiModel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The result of a single survey response submitted as part of a batch. Rejected responses carry
+ * either a conflict type or an error message, comparable to the 409 or 400 response of the single
+ * answer endpoint.
+ *
+ * @author Marko Voß
+ *
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@ApiModel
+public class SurveyResponseResultDto {
+
+  private Long questionId;
+
+  private boolean accepted;
+
+  private SurveyResponseConflictType conflictType;
+
+  private String error;
+}
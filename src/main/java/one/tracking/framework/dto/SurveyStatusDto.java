@@ -37,6 +37,9 @@ public class SurveyStatusDto {
   @NotNull
   private Integer countQuestions;
 
+  @NotNull
+  private Integer countAnswered;
+
   @NotNull
   private SurveyStatusType status;
 
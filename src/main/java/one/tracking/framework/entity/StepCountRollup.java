@@ -0,0 +1,61 @@
+/**
+ *
+ */
+package one.tracking.framework.entity;
+
+import java.time.Instant;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import one.tracking.framework.domain.StepCountRollupType;
+
+/**
+ * Total step count of a user within a time bucket. Rollups get updated incrementally by the
+ * increase of the reconciled step count timeline, so reading daily or weekly totals does not
+ * require to sum up all step counts of the user.
+ *
+ * @author Marko Voß
+ *
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "type", "start_time"}))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StepCountRollup {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @ManyToOne(optional = false, fetch = FetchType.LAZY)
+  @JoinColumn(nullable = false)
+  private User user;
+
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false, length = 16)
+  private StepCountRollupType type;
+
+  /**
+   * The start of the bucket as returned by {@link StepCountRollupType#getStart(Instant)}.
+   */
+  @Column(nullable = false)
+  private Instant startTime;
+
+  @Column(nullable = false)
+  private long stepCount;
+}
@@ -0,0 +1,58 @@
+/**
+ *
+ */
+package one.tracking.framework.entity;
+
+import java.time.Instant;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import one.tracking.framework.domain.StepCountTimeline;
+
+/**
+ * Persisted {@link StepCountTimeline.Segment} of the reconciled step counts of a user. Segments of
+ * a user do not overlap and have a constant rate of {@link #stepCount} steps per {@link #duration}
+ * milliseconds.
+ *
+ * @author Marko Voß
+ *
+ */
+@Entity
+@Table(indexes = @Index(columnList = "user_id, start_time"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StepCountSegment {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @ManyToOne(optional = false, fetch = FetchType.LAZY)
+  @JoinColumn(nullable = false)
+  private User user;
+
+  @Column(nullable = false)
+  private Instant startTime;
+
+  @Column(nullable = false)
+  private Instant endTime;
+
+  @Column(nullable = false)
+  private long stepCount;
+
+  @Column(nullable = false)
+  private long duration;
+}
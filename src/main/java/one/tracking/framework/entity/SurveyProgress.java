@@ -0,0 +1,80 @@
+/**
+ *
+ */
+package one.tracking.framework.entity;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.OneToOne;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import one.tracking.framework.domain.SurveyStatusType;
+
+/**
+ * Materialized progress of a {@link SurveyStatus}. The progress gets updated incrementally on each
+ * survey response, so reading the status of a survey instance does not require to load and evaluate
+ * all responses of the user.
+ *
+ * @author Marko Voß
+ *
+ */
+@Entity
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SurveyProgress {
+
+  /**
+   * Upper bound of top level questions, which can be tracked by the {@link #answered} bitmap.
+   */
+  public static final int MAX_QUESTIONS = 8 * 1024;
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @OneToOne(optional = false, fetch = FetchType.LAZY)
+  @JoinColumn(nullable = false, unique = true)
+  private SurveyStatus surveyStatus;
+
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false, length = 16)
+  private SurveyStatusType status;
+
+  @Column(nullable = false)
+  private int countAnswered;
+
+  @Column(nullable = false)
+  private int countRequired;
+
+  /**
+   * The highest version of the responses of the {@link #surveyStatus}. The versions of new responses
+   * are allocated from this counter, so storing a response does not require to read the latest
+   * version of the question.
+   */
+  @Column(nullable = false)
+  private int responseVersion;
+
+  /**
+   * Incremented on each change of the {@link #surveyStatus}. Used to compute the entity tag of the
+   * survey overview.
+   */
+  @Column(nullable = false)
+  private long statusVersion;
+
+  /**
+   * Bitmap of the answered top level questions as returned by {@link java.util.BitSet#toByteArray()}.
+   */
+  @Column(nullable = false, length = MAX_QUESTIONS / 8)
+  private byte[] answered;
+}
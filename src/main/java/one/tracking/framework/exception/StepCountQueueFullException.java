@@ -0,0 +1,19 @@
+/**
+ *
+ */
+package one.tracking.framework.exception;
+
+/**
+ * Thrown if step counts can not be accepted as the write-behind queue is full or stopped.
+ *
+ * @author Marko Voß
+ *
+ */
+public class StepCountQueueFullException extends Exception {
+
+  private static final long serialVersionUID = -3407583529713185426L;
+
+  public StepCountQueueFullException(final String message) {
+    super(message);
+  }
+}
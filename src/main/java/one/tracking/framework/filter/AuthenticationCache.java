@@ -0,0 +1,136 @@
+/**
+ *
+ */
+package one.tracking.framework.filter;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import lombok.Value;
+
+/**
+ * Bounded cache of verified bearer tokens. Tokens are identified by their SHA-256 hash, so the tokens
+ * themselves are not retained. An entry expires with the expiration of its token but not later than
+ * the configured maximum time to live. If the cache exceeds its maximum size, expired entries and
+ * further arbitrary entries get evicted.
+ *
+ * @author Marko Voß
+ *
+ */
+public class AuthenticationCache {
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  private final int maxSize;
+
+  private final Duration maxTimeToLive;
+
+  /**
+   * @param maxSize the maximum number of cached tokens
+   * @param maxTimeToLive the maximum duration a token is cached
+   */
+  public AuthenticationCache(final int maxSize, final Duration maxTimeToLive) {
+
+    if (maxSize < 1)
+      throw new IllegalArgumentException("The maximum size must be positive.");
+
+    this.maxSize = maxSize;
+    this.maxTimeToLive = maxTimeToLive;
+  }
+
+  /**
+   * @param token the bearer token
+   * @return a new authentication of the cached principal and its authorities or <code>null</code> if
+   *         the token is not cached or has expired
+   */
+  public UsernamePasswordAuthenticationToken get(final String token) {
+
+    final String key = hash(token);
+    final Entry entry = this.entries.get(key);
+
+    if (entry == null)
+      return null;
+
+    if (Instant.now().isAfter(entry.getExpiresAt())) {
+      this.entries.remove(key, entry);
+      return null;
+    }
+
+    // Authentication objects are mutable, hence each request gets its own instance
+    return new UsernamePasswordAuthenticationToken(entry.getPrincipal(), null, entry.getAuthorities());
+  }
+
+  /**
+   * @param token the verified bearer token
+   * @param expiration the expiration of the token or <code>null</code> if the token does not expire
+   * @param authentication the authentication of the token
+   */
+  public void put(final String token, final Date expiration, final UsernamePasswordAuthenticationToken authentication) {
+
+    final Instant now = Instant.now();
+    final Instant maxExpiresAt = now.plus(this.maxTimeToLive);
+    final Instant expiresAt = expiration == null || expiration.toInstant().isAfter(maxExpiresAt)
+        ? maxExpiresAt
+        : expiration.toInstant();
+
+    if (!expiresAt.isAfter(now))
+      return;
+
+    this.entries.put(hash(token),
+        new Entry(authentication.getName(), List.copyOf(authentication.getAuthorities()), expiresAt));
+
+    if (this.entries.size() > this.maxSize)
+      evict(now);
+  }
+
+  public int size() {
+    return this.entries.size();
+  }
+
+  private void evict(final Instant now) {
+
+    this.entries.values().removeIf(p -> now.isAfter(p.getExpiresAt()));
+
+    // Make room for further tokens at once instead of evicting on every subsequent put
+    final int targetSize = this.maxSize * 3 / 4;
+    final Iterator<Entry> iterator = this.entries.values().iterator();
+
+    while (this.entries.size() > targetSize && iterator.hasNext()) {
+      iterator.next();
+      iterator.remove();
+    }
+  }
+
+  private static String hash(final String token) {
+
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+
+    } catch (final NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Value
+  private static class Entry {
+
+    private final String principal;
+
+    private final Collection<? extends GrantedAuthority> authorities;
+
+    private final Instant expiresAt;
+  }
+}
@@ -21,7 +21,7 @@ import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
 import one.tracking.framework.support.JWTHelper;
 
-public abstract class BearerAuthenticationFilter extends BasicAuthenticationFilter {
+public class BearerAuthenticationFilter extends BasicAuthenticationFilter {
 
   private static final Logger LOG = LoggerFactory.getLogger(BearerAuthenticationFilter.class);
 
@@ -29,9 +29,28 @@ public abstract class BearerAuthenticationFilter extends BasicAuthenticationFilt
 
   private final JWTHelper jwtHelper;
 
-  public BearerAuthenticationFilter(final AuthenticationManager authManager, final JWTHelper jwtHelper) {
+  private final UserExistenceCheck userExistenceCheck;
+
+  private final AuthenticationCache authenticationCache;
+
+  public BearerAuthenticationFilter(final AuthenticationManager authManager, final JWTHelper jwtHelper,
+      final UserExistenceCheck userExistenceCheck) {
+    this(authManager, jwtHelper, userExistenceCheck, null);
+  }
+
+  /**
+   * @param authManager the {@link AuthenticationManager}
+   * @param jwtHelper the {@link JWTHelper}
+   * @param userExistenceCheck the {@link UserExistenceCheck} verifying the user of each token
+   * @param authenticationCache the cache of verified tokens or <code>null</code> to verify each
+   *        token on every request
+   */
+  public BearerAuthenticationFilter(final AuthenticationManager authManager, final JWTHelper jwtHelper,
+      final UserExistenceCheck userExistenceCheck, final AuthenticationCache authenticationCache) {
     super(authManager);
     this.jwtHelper = jwtHelper;
+    this.userExistenceCheck = userExistenceCheck;
+    this.authenticationCache = authenticationCache;
   }
 
   @Override
@@ -73,23 +92,33 @@ public abstract class BearerAuthenticationFilter extends BasicAuthenticationFilt
 
     final String bearerToken = authHeader.replace(PREFIX_BEARER, "");
 
-    final Claims claims = this.jwtHelper.decodeJWT(bearerToken);
-    final String userId = claims.getSubject();
+    UsernamePasswordAuthenticationToken authentication =
+        this.authenticationCache == null ? null : this.authenticationCache.get(bearerToken);
 
-    if (userId == null)
-      return null;
+    if (authentication == null) {
 
-    if (!checkIfUserExists(userId))
-      return null;
+      final Claims claims = this.jwtHelper.decodeJWT(bearerToken);
+      final String userId = claims.getSubject();
 
-    @SuppressWarnings("unchecked")
-    final List<String> roles = claims.get("scopes", List.class);
-    final List<GrantedAuthority> authorities = roles == null ? Collections.emptyList()
-        : roles.stream().map(SimpleGrantedAuthority::new).collect(Collectors.toList());
+      if (userId == null)
+        return null;
 
-    return new UsernamePasswordAuthenticationToken(userId, null, authorities);
-  }
+      @SuppressWarnings("unchecked")
+      final List<String> roles = claims.get("scopes", List.class);
+      final List<GrantedAuthority> authorities = roles == null ? Collections.emptyList()
+          : roles.stream().map(SimpleGrantedAuthority::new).collect(Collectors.toList());
+
+      authentication = new UsernamePasswordAuthenticationToken(userId, null, authorities);
+
+      if (this.authenticationCache != null)
+        this.authenticationCache.put(bearerToken, claims.getExpiration(), authentication);
+    }
 
-  protected abstract boolean checkIfUserExists(String userId);
+    // The user may have been deleted since the token has been verified
+    if (!this.userExistenceCheck.exists(authentication.getName()))
+      return null;
+
+    return authentication;
+  }
 
 }
@@ -0,0 +1,20 @@
+/**
+ *
+ */
+package one.tracking.framework.filter;
+
+/**
+ * Verifies the existence of the user of an authenticated token.
+ *
+ * @author Marko Voß
+ *
+ */
+@FunctionalInterface
+public interface UserExistenceCheck {
+
+  /**
+   * @param userId the id of the user
+   * @return <code>true</code> if the user exists
+   */
+  boolean exists(String userId);
+}
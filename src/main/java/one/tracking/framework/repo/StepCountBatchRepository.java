@@ -0,0 +1,33 @@
+/**
+ *
+ */
+package one.tracking.framework.repo;
+
+import java.time.Instant;
+import java.util.List;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+import one.tracking.framework.entity.User;
+import one.tracking.framework.entity.health.StepCount;
+
+/**
+ * Set-based queries used to store many {@link StepCount}s of a user at once.
+ *
+ * @author Marko Voß
+ *
+ */
+public interface StepCountBatchRepository extends Repository<StepCount, Long> {
+
+  /**
+   * @param user the {@link User}
+   * @param from the lower bound of the start time (inclusive)
+   * @param to the upper bound of the start time (inclusive)
+   * @return all {@link StepCount}s of the user starting within the specified range
+   */
+  @Query("SELECT s FROM StepCount s WHERE s.user = :user AND s.startTime BETWEEN :from AND :to")
+  List<StepCount> findByUserAndStartTimeBetween(
+      @Param("user") User user,
+      @Param("from") Instant from,
+      @Param("to") Instant to);
+}
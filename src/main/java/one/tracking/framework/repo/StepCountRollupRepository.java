@@ -0,0 +1,50 @@
+/**
+ *
+ */
+package one.tracking.framework.repo;
+
+import java.time.Instant;
+import java.util.List;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import one.tracking.framework.domain.StepCountRollupType;
+import one.tracking.framework.entity.StepCountRollup;
+import one.tracking.framework.entity.User;
+
+/**
+ * @author Marko Voß
+ *
+ */
+public interface StepCountRollupRepository extends CrudRepository<StepCountRollup, Long> {
+
+  /**
+   * Adds the specified delta to an existing rollup without reading it first.
+   *
+   * @return the number of updated rollups, which is 0 if the rollup does not exist yet
+   */
+  @Modifying
+  @Query("UPDATE StepCountRollup r SET r.stepCount = r.stepCount + :delta"
+      + " WHERE r.user = :user AND r.type = :type AND r.startTime = :startTime")
+  int increment(
+      @Param("user") User user,
+      @Param("type") StepCountRollupType type,
+      @Param("startTime") Instant startTime,
+      @Param("delta") long delta);
+
+  /**
+   * @param user the {@link User}
+   * @param type the {@link StepCountRollupType}
+   * @param from the lower bound of the start time (inclusive)
+   * @param to the upper bound of the start time (exclusive)
+   * @return the rollups of the user within the specified range ordered by their start time
+   */
+  @Query("SELECT r FROM StepCountRollup r WHERE r.user = :user AND r.type = :type"
+      + " AND r.startTime >= :from AND r.startTime < :to ORDER BY r.startTime")
+  List<StepCountRollup> findByUserAndTypeAndStartTimeRange(
+      @Param("user") User user,
+      @Param("type") StepCountRollupType type,
+      @Param("from") Instant from,
+      @Param("to") Instant to);
+}
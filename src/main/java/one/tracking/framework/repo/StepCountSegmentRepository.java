@@ -0,0 +1,39 @@
+/**
+ *
+ */
+package one.tracking.framework.repo;
+
+import java.time.Instant;
+import java.util.List;
+import javax.persistence.LockModeType;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import one.tracking.framework.entity.StepCountSegment;
+import one.tracking.framework.entity.User;
+
+/**
+ * @author Marko Voß
+ *
+ */
+public interface StepCountSegmentRepository extends CrudRepository<StepCountSegment, Long> {
+
+  /**
+   * Locks the read segments as they get replaced by the reconciliation of new step counts. Segments
+   * touching the bounds are included, so they can be merged with adjacent segments of the same rate.
+   *
+   * @param user the {@link User}
+   * @param from the lower bound
+   * @param to the upper bound
+   * @return all segments of the user overlapping or touching the specified range ordered by their
+   *         start time
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT s FROM StepCountSegment s WHERE s.user = :user AND s.endTime >= :from AND s.startTime <= :to"
+      + " ORDER BY s.startTime")
+  List<StepCountSegment> findForUpdateByUserAndRange(
+      @Param("user") User user,
+      @Param("from") Instant from,
+      @Param("to") Instant to);
+}
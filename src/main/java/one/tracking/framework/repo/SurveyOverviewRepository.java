@@ -0,0 +1,48 @@
+/**
+ *
+ */
+package one.tracking.framework.repo;
+
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+import one.tracking.framework.entity.SurveyInstance;
+import one.tracking.framework.entity.SurveyProgress;
+import one.tracking.framework.entity.SurveyStatus;
+import one.tracking.framework.entity.User;
+import one.tracking.framework.entity.meta.ReleaseStatusType;
+import one.tracking.framework.entity.meta.Survey;
+
+/**
+ * Set-based queries of the survey overview. Each query does read the data of all surveys at once,
+ * so the number of queries does not depend on the number of surveys.
+ *
+ * @author Marko Voß
+ *
+ */
+public interface SurveyOverviewRepository extends Repository<Survey, Long> {
+
+  /**
+   * @param releaseStatus the {@link ReleaseStatusType}
+   * @return the latest version of each survey with the specified release status ordered by nameId
+   */
+  @Query("SELECT s FROM Survey s LEFT JOIN FETCH s.dependsOn WHERE s.releaseStatus = :releaseStatus AND s.version = "
+      + "(SELECT MAX(v.version) FROM Survey v WHERE v.nameId = s.nameId AND v.releaseStatus = :releaseStatus) "
+      + "ORDER BY s.nameId ASC")
+  List<Survey> findLatestByReleaseStatus(@Param("releaseStatus") ReleaseStatusType releaseStatus);
+
+  /**
+   * @param user the {@link User}
+   * @param instances the {@link SurveyInstance}s
+   * @return pairs of each existing {@link SurveyStatus} and its {@link SurveyProgress}, which is
+   *         <code>null</code> if the progress does not exist
+   */
+  @Query("SELECT s, p FROM SurveyStatus s LEFT JOIN FETCH s.nextQuestion "
+      + "LEFT JOIN SurveyProgress p ON p.surveyStatus = s "
+      + "WHERE s.user = :user AND s.surveyInstance IN :instances")
+  List<Object[]> findStatusesByUserAndSurveyInstanceIn(
+      @Param("user") User user,
+      @Param("instances") Collection<SurveyInstance> instances);
+}
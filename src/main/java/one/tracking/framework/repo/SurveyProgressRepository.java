@@ -0,0 +1,37 @@
+/**
+ *
+ */
+package one.tracking.framework.repo;
+
+import java.util.Optional;
+import javax.persistence.LockModeType;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import one.tracking.framework.entity.SurveyInstance;
+import one.tracking.framework.entity.SurveyProgress;
+import one.tracking.framework.entity.SurveyStatus;
+import one.tracking.framework.entity.User;
+
+/**
+ * @author Marko Voß
+ *
+ */
+public interface SurveyProgressRepository extends CrudRepository<SurveyProgress, Long> {
+
+  /**
+   * Reads the progress including its {@link SurveyStatus} by a single query.
+   */
+  @Query("SELECT p FROM SurveyProgress p JOIN FETCH p.surveyStatus s "
+      + "WHERE s.user = :user AND s.surveyInstance = :surveyInstance")
+  Optional<SurveyProgress> findByUserAndSurveyInstance(
+      @Param("user") User user,
+      @Param("surveyInstance") SurveyInstance surveyInstance);
+
+  /**
+   * Locks the progress of the specified status as its update depends on the current state.
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  Optional<SurveyProgress> findBySurveyStatus(SurveyStatus surveyStatus);
+}
@@ -0,0 +1,73 @@
+/**
+ *
+ */
+package one.tracking.framework.repo;
+
+import java.util.Collection;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+import one.tracking.framework.entity.SurveyInstance;
+import one.tracking.framework.entity.SurveyResponse;
+import one.tracking.framework.entity.User;
+
+/**
+ * Set-based operations on the append-only versions of {@link SurveyResponse}s. A new response is
+ * always inserted as a new version and the current response of a question is the one with the
+ * highest version. Versions are allocated per user and survey instance, hence the versions of a
+ * question are increasing but not necessarily consecutive.
+ *
+ * @author Marko Voß
+ *
+ */
+public interface SurveyResponseVersionRepository extends Repository<SurveyResponse, Long> {
+
+  /**
+   * @param user the {@link User}
+   * @param instance the {@link SurveyInstance}
+   * @return the highest version of all responses of the user to the survey instance or -1 if there
+   *         are no responses
+   */
+  @Query("SELECT COALESCE(MAX(r.version), -1) FROM SurveyResponse r "
+      + "WHERE r.user = :user AND r.surveyInstance = :instance")
+  int findMaxVersion(
+      @Param("user") User user,
+      @Param("instance") SurveyInstance instance);
+
+  /**
+   * Reads the state of the current response by a projection, so responses invalidated within the
+   * same transaction are never read from the persistence context.
+   *
+   * @param user the {@link User}
+   * @param instance the {@link SurveyInstance}
+   * @param questionId the id of the question
+   * @return true if the current response to the question is valid and has not been skipped
+   */
+  @Query("SELECT CASE WHEN COUNT(r) > 0 THEN true ELSE false END FROM SurveyResponse r "
+      + "WHERE r.user = :user AND r.surveyInstance = :instance AND r.question.id = :questionId "
+      + "AND r.valid = true AND r.skipped = false")
+  boolean isAnswered(
+      @Param("user") User user,
+      @Param("instance") SurveyInstance instance,
+      @Param("questionId") Long questionId);
+
+  /**
+   * Invalidates all valid responses of the specified user and survey instance to the specified
+   * questions. Pending inserts get flushed before, as they may be invalidated as well. The
+   * persistence context does not get cleared, so entities held by the caller stay managed. This is
+   * safe as responses are only read by projections before being invalidated.
+   *
+   * @param user the {@link User}
+   * @param instance the {@link SurveyInstance}
+   * @param questionIds the ids of the questions
+   * @return the number of invalidated responses
+   */
+  @Modifying(flushAutomatically = true)
+  @Query("UPDATE SurveyResponse r SET r.valid = false "
+      + "WHERE r.user = :user AND r.surveyInstance = :instance AND r.question.id IN :questionIds AND r.valid = true")
+  int invalidate(
+      @Param("user") User user,
+      @Param("instance") SurveyInstance instance,
+      @Param("questionIds") Collection<Long> questionIds);
+}
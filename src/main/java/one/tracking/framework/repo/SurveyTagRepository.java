@@ -0,0 +1,58 @@
+/**
+ *
+ */
+package one.tracking.framework.repo;
+
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+import one.tracking.framework.domain.SurveyVersion;
+import one.tracking.framework.entity.SurveyProgress;
+import one.tracking.framework.entity.User;
+import one.tracking.framework.entity.meta.ReleaseStatusType;
+import one.tracking.framework.entity.meta.Survey;
+
+/**
+ * Lightweight queries used to compute entity tags. None of these queries does load a survey tree or
+ * any status, so conditional requests can be answered without reading the actual representation.
+ *
+ * @author Marko Voß
+ *
+ */
+public interface SurveyTagRepository extends Repository<Survey, Long> {
+
+  /**
+   * @param nameId the nameId of the survey
+   * @param releaseStatus the {@link ReleaseStatusType}
+   * @return the latest version of the specified survey with the specified release status
+   */
+  @Query("SELECT new one.tracking.framework.domain.SurveyVersion(s.id, s.nameId, s.version) FROM Survey s "
+      + "WHERE s.nameId = :nameId AND s.releaseStatus = :releaseStatus AND s.version = "
+      + "(SELECT MAX(v.version) FROM Survey v WHERE v.nameId = :nameId AND v.releaseStatus = :releaseStatus)")
+  Optional<SurveyVersion> findLatestVersion(
+      @Param("nameId") String nameId,
+      @Param("releaseStatus") ReleaseStatusType releaseStatus);
+
+  /**
+   * @param releaseStatus the {@link ReleaseStatusType}
+   * @return the ids of the latest version of each survey with the specified release status ordered by
+   *         nameId
+   */
+  @Query("SELECT s.id FROM Survey s WHERE s.releaseStatus = :releaseStatus AND s.version = "
+      + "(SELECT MAX(v.version) FROM Survey v WHERE v.nameId = s.nameId AND v.releaseStatus = :releaseStatus) "
+      + "ORDER BY s.nameId ASC")
+  List<Long> findLatestIdsByReleaseStatus(@Param("releaseStatus") ReleaseStatusType releaseStatus);
+
+  /**
+   * Each change of a survey status of the user increments the status version of exactly one
+   * {@link SurveyProgress} by one, which starts at one. Hence the sum does change on each status
+   * change of the user.
+   *
+   * @param user the {@link User}
+   * @return the sum of the status versions of all {@link SurveyProgress} entries of the user
+   */
+  @Query("SELECT COALESCE(SUM(p.statusVersion), 0) FROM SurveyProgress p WHERE p.surveyStatus.user = :user")
+  long sumStatusVersionsByUser(@Param("user") User user);
+}
@@ -0,0 +1,37 @@
+/**
+ *
+ */
+package one.tracking.framework.repo;
+
+import java.util.List;
+import java.util.Optional;
+import javax.persistence.LockModeType;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+import one.tracking.framework.entity.User;
+
+/**
+ * @author Marko Voß
+ *
+ */
+public interface UserIdRepository extends Repository<User, String> {
+
+  /**
+   * @return the ids of all users without loading the user entities
+   */
+  @Query("SELECT u.id FROM User u")
+  List<String> findAllIds();
+
+  /**
+   * Locks the user to serialize writes of data of the user, which can not be serialized by locking
+   * existing rows, e.g. as none exist yet.
+   *
+   * @param id the id of the user
+   * @return the locked user
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT u FROM User u WHERE u.id = :id")
+  Optional<User> findForUpdateById(@Param("id") String id);
+}
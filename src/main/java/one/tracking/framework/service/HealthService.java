@@ -4,14 +4,32 @@
 package one.tracking.framework.service;
 
 import java.time.Instant;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import lombok.Data;
+import one.tracking.framework.component.StepCountRollupComponent;
+import one.tracking.framework.component.StepCountTimelineComponent;
+import one.tracking.framework.component.StepCountUpsertComponent;
+import one.tracking.framework.domain.StepCountRollupType;
 import one.tracking.framework.dto.StepCountDto;
+import one.tracking.framework.dto.StepCountRollupDto;
+import one.tracking.framework.entity.StepCountRollup;
 import one.tracking.framework.entity.User;
 import one.tracking.framework.entity.health.StepCount;
+import one.tracking.framework.repo.StepCountBatchRepository;
 import one.tracking.framework.repo.StepCountRepository;
-import one.tracking.framework.repo.UserRepository;
 
 /**
  * @author Marko Voß
@@ -24,11 +42,42 @@ public class HealthService {
   private StepCountRepository stepCountRepository;
 
   @Autowired
-  private UserRepository userRepository;
+  private StepCountBatchRepository stepCountBatchRepository;
 
-  public void storeStepCount(final String userId, final StepCountDto stepCountDto) {
+  @Autowired
+  private StepCountUpsertComponent stepCountUpsertComponent;
+
+  @Autowired
+  private StepCountRollupComponent stepCountRollupComponent;
+
+  @Autowired
+  private StepCountTimelineComponent stepCountTimelineComponent;
+
+  @Autowired
+  private Validator validator;
+
+  @Value("${app.health.stepcounts.maxSize:5000}")
+  private int maxSize;
+
+  @Value("${app.health.stepcounts.maxInterval:604800000}")
+  private long maxInterval;
 
-    final User user = this.userRepository.findById(userId).get();
+  @Value("${app.health.stepcounts.rollups.maxBuckets:366}")
+  private int maxBuckets;
+
+  /**
+   * Stores the specified step count of the user. The count of an existing interval will only be
+   * increased. If supported by the database, the step count gets written by a native upsert
+   * statement. The step count gets reconciled with the timeline of the user.
+   *
+   * @param user the {@link User}
+   * @param stepCountDto the step count to store
+   */
+  @Transactional
+  public void storeStepCount(final User user, final StepCountDto stepCountDto) {
+
+    if (stepCountDto.getCount() == null)
+      throw new IllegalArgumentException("Count must not be null.");
 
     final Instant start = Instant.ofEpochMilli(stepCountDto.getStartTime());
     final Instant end = Instant.ofEpochMilli(stepCountDto.getEndTime());
@@ -36,24 +85,218 @@ public class HealthService {
     if (start.isAfter(end))
       throw new IllegalArgumentException("StartTime must be before EndTime.");
 
-    final Optional<StepCount> entityOp = this.stepCountRepository.findByUserAndStartTimeAndEndTime(user, start, end);
+    if (stepCountDto.getEndTime() - stepCountDto.getStartTime() > this.maxInterval)
+      throw new IllegalArgumentException("The interval must not exceed " + this.maxInterval + " milliseconds.");
+
+    store(user, Collections.singletonMap(new Interval(start, end), stepCountDto.getCount()));
+  }
+
+  /**
+   * Stores the specified step counts of the user at once. All step counts get validated upfront and
+   * none of them will be stored if any of them is invalid. If supported by the database, the step
+   * counts get written by native upsert statements without reading them first. Otherwise existing
+   * step counts are read by a single query and only new or increased step counts get written by
+   * batched statements. Like for single step counts, the count of an existing interval will only be
+   * increased.
+   *
+   * @param user the {@link User}
+   * @param stepCountDtos the step counts to store
+   */
+  @Transactional
+  public void storeStepCounts(final User user, final List<StepCountDto> stepCountDtos) {
+
+    store(user, validate(stepCountDtos));
+  }
+
+  /**
+   * Validates the specified step counts like {@link #storeStepCounts(User, List)}, e.g. before they
+   * get stored asynchronously.
+   *
+   * @param stepCountDtos the step counts to validate
+   * @throws IllegalArgumentException if any of the step counts is invalid
+   */
+  public void validateStepCounts(final List<StepCountDto> stepCountDtos) {
 
-    if (entityOp.isEmpty()) {
+    validate(stepCountDtos);
+  }
+
+  /**
+   * @param user the {@link User}
+   * @param type the {@link StepCountRollupType}
+   * @param from the lower bound in milliseconds since epoch (inclusive)
+   * @param to the upper bound in milliseconds since epoch (exclusive)
+   * @return the total step counts of the user per bucket within the specified range. Buckets
+   *         without step counts are omitted.
+   * @throws IllegalArgumentException if the range exceeds the configured number of buckets of the
+   *         specified type
+   */
+  public List<StepCountRollupDto> getStepCountRollups(final User user, final StepCountRollupType type,
+      final long from, final long to) {
+
+    if (from < 0 || from > to)
+      throw new IllegalArgumentException("From must be a positive value before To.");
+
+    if (to - from > this.maxBuckets * type.getDuration().toMillis())
+      throw new IllegalArgumentException(
+          "The range must not exceed " + this.maxBuckets + " buckets of type " + type + ".");
+
+    final List<StepCountRollup> rollups =
+        this.stepCountRollupComponent.getRollups(user, type, Instant.ofEpochMilli(from), Instant.ofEpochMilli(to));
+
+    final List<StepCountRollupDto> result = new ArrayList<>(rollups.size());
+
+    for (final StepCountRollup rollup : rollups) {
+      result.add(StepCountRollupDto.builder()
+          .type(type)
+          .count(rollup.getStepCount())
+          .startTime(rollup.getStartTime().toEpochMilli())
+          .endTime(type.getEnd(rollup.getStartTime()).toEpochMilli())
+          .build());
+    }
 
-      this.stepCountRepository.save(StepCount.builder()
+    return result;
+  }
+
+  /**
+   * Step counts are not compared with the stored ones, as both the upsert and the timeline keep the
+   * highest count.
+   */
+  private void store(final User user, final Map<Interval, Integer> counts) {
+
+    final List<StepCount> stepCounts = new ArrayList<>(counts.size());
+
+    for (final Map.Entry<Interval, Integer> entry : counts.entrySet()) {
+      stepCounts.add(StepCount.builder()
           .user(user)
-          .stepCount(stepCountDto.getCount())
-          .startTime(start)
-          .endTime(end)
+          .stepCount(entry.getValue())
+          .startTime(entry.getKey().getStart())
+          .endTime(entry.getKey().getEnd())
           .build());
+    }
+
+    if (this.stepCountUpsertComponent.isSupported())
+      this.stepCountUpsertComponent.upsert(stepCounts);
+    else
+      save(user, counts);
+
+    this.stepCountTimelineComponent.add(user, stepCounts);
+  }
 
-    } else if (stepCountDto.getCount() > entityOp.get().getStepCount()) {
+  /**
+   * Fallback if upserts are not supported: Existing step counts are read by a single query, so only
+   * new or increased step counts get written.
+   */
+  private void save(final User user, final Map<Interval, Integer> counts) {
 
-      final StepCount entity = entityOp.get();
-      entity.setStepCount(stepCountDto.getCount());
-      entity.setUpdatedAt(Instant.now());
-      this.stepCountRepository.save(entity);
+    Instant from = null;
+    Instant to = null;
 
+    for (final Interval interval : counts.keySet()) {
+      if (from == null || interval.getStart().isBefore(from))
+        from = interval.getStart();
+      if (to == null || interval.getStart().isAfter(to))
+        to = interval.getStart();
     }
+
+    final Map<Interval, StepCount> existing = new HashMap<>();
+    for (final StepCount entity : this.stepCountBatchRepository.findByUserAndStartTimeBetween(user, from, to)) {
+      existing.put(new Interval(entity.getStartTime(), entity.getEndTime()), entity);
+    }
+
+    final Instant now = Instant.now();
+    final List<StepCount> changes = new ArrayList<>(counts.size());
+
+    for (final Map.Entry<Interval, Integer> entry : counts.entrySet()) {
+
+      final StepCount entity = existing.get(entry.getKey());
+
+      if (entity == null) {
+
+        changes.add(StepCount.builder()
+            .user(user)
+            .stepCount(entry.getValue())
+            .startTime(entry.getKey().getStart())
+            .endTime(entry.getKey().getEnd())
+            .build());
+
+      } else if (entry.getValue() > entity.getStepCount()) {
+
+        entity.setStepCount(entry.getValue());
+        entity.setUpdatedAt(now);
+        changes.add(entity);
+      }
+    }
+
+    this.stepCountRepository.saveAll(changes);
+  }
+
+  /**
+   * Validates all step counts in one pass and coalesces step counts of the same interval by keeping
+   * the highest count.
+   */
+  private Map<Interval, Integer> validate(final List<StepCountDto> stepCountDtos) {
+
+    if (stepCountDtos == null || stepCountDtos.isEmpty())
+      throw new IllegalArgumentException("Step counts must not be empty.");
+
+    if (stepCountDtos.size() > this.maxSize)
+      throw new IllegalArgumentException("Step counts must not contain more than " + this.maxSize + " entries.");
+
+    final Set<String> errors = new TreeSet<>();
+    final Map<Interval, Integer> counts = new LinkedHashMap<>();
+
+    for (int i = 0; i < stepCountDtos.size(); i++) {
+
+      final StepCountDto stepCountDto = stepCountDtos.get(i);
+
+      if (stepCountDto == null) {
+        errors.add("[" + i + "]: must not be null");
+        continue;
+      }
+
+      // Bean validation of the request body does not cascade into the elements of a list
+      final Set<ConstraintViolation<StepCountDto>> violations = this.validator.validate(stepCountDto);
+
+      if (!violations.isEmpty()) {
+        for (final ConstraintViolation<StepCountDto> violation : violations)
+          errors.add("[" + i + "]." + violation.getPropertyPath() + ": " + violation.getMessage());
+        continue;
+      }
+
+      if (stepCountDto.getCount() == null) {
+        errors.add("[" + i + "].count: must not be null");
+        continue;
+      }
+
+      final Interval interval = new Interval(
+          Instant.ofEpochMilli(stepCountDto.getStartTime()),
+          Instant.ofEpochMilli(stepCountDto.getEndTime()));
+
+      if (interval.getStart().isAfter(interval.getEnd())) {
+        errors.add("[" + i + "]: StartTime must be before EndTime.");
+        continue;
+      }
+
+      // Bounds the number of rollup buckets touched by a single step count
+      if (stepCountDto.getEndTime() - stepCountDto.getStartTime() > this.maxInterval) {
+        errors.add("[" + i + "]: The interval must not exceed " + this.maxInterval + " milliseconds.");
+        continue;
+      }
+
+      counts.merge(interval, stepCountDto.getCount(), Math::max);
+    }
+
+    if (!errors.isEmpty())
+      throw new IllegalArgumentException(String.join(", ", errors));
+
+    return counts;
+  }
+
+  @Data
+  private static class Interval {
+
+    private final Instant start;
+
+    private final Instant end;
   }
 }
@@ -4,44 +4,43 @@
 package one.tracking.framework.service;
 
 import java.time.Instant;
-import java.util.Collections;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import one.tracking.framework.component.SurveyDependencyComponent;
+import one.tracking.framework.component.SurveyGraphComponent;
+import one.tracking.framework.component.SurveyInstanceComponent;
 import one.tracking.framework.component.SurveyResponseComponent;
-import one.tracking.framework.domain.Period;
+import one.tracking.framework.domain.SurveyGraph;
 import one.tracking.framework.domain.SurveyStatusChange;
 import one.tracking.framework.domain.SurveyStatusType;
 import one.tracking.framework.dto.SurveyResponseConflictType;
 import one.tracking.framework.dto.SurveyResponseDto;
+import one.tracking.framework.dto.SurveyResponseResultDto;
 import one.tracking.framework.entity.SurveyInstance;
-import one.tracking.framework.entity.SurveyResponse;
+import one.tracking.framework.entity.SurveyProgress;
 import one.tracking.framework.entity.SurveyStatus;
 import one.tracking.framework.entity.User;
-import one.tracking.framework.entity.meta.Answer;
-import one.tracking.framework.entity.meta.ReleaseStatusType;
-import one.tracking.framework.entity.meta.Survey;
-import one.tracking.framework.entity.meta.container.Container;
-import one.tracking.framework.entity.meta.question.ChecklistQuestion;
-import one.tracking.framework.entity.meta.question.ChoiceQuestion;
-import one.tracking.framework.entity.meta.question.NumberQuestion;
 import one.tracking.framework.entity.meta.question.Question;
-import one.tracking.framework.entity.meta.question.RangeQuestion;
-import one.tracking.framework.entity.meta.question.TextQuestion;
 import one.tracking.framework.exception.SurveyResponseConflictException;
-import one.tracking.framework.repo.ContainerRepository;
-import one.tracking.framework.repo.SurveyInstanceRepository;
-import one.tracking.framework.repo.SurveyRepository;
+import one.tracking.framework.repo.SurveyProgressRepository;
 import one.tracking.framework.repo.SurveyResponseRepository;
+import one.tracking.framework.repo.SurveyResponseVersionRepository;
 import one.tracking.framework.repo.SurveyStatusRepository;
-import one.tracking.framework.repo.UserRepository;
-import one.tracking.framework.support.ServiceUtility;
+import one.tracking.framework.repo.UserIdRepository;
 
 /**
  * @author Marko Voß
@@ -53,19 +52,19 @@ public class SurveyResponseService {
   private static final Logger LOG = LoggerFactory.getLogger(SurveyResponseService.class);
 
   @Autowired
-  private UserRepository userRepository;
+  private SurveyGraphComponent surveyGraphComponent;
 
   @Autowired
-  private SurveyRepository surveyRepository;
+  private SurveyInstanceComponent surveyInstanceComponent;
 
   @Autowired
-  private SurveyInstanceRepository surveyInstanceRepository;
+  private SurveyDependencyComponent surveyDependencyComponent;
 
   @Autowired
   private SurveyStatusRepository surveyStatusRepository;
 
   @Autowired
-  private ContainerRepository containerRepository;
+  private SurveyProgressRepository surveyProgressRepository;
 
   @Autowired
   private SurveyResponseComponent surveyResponseComponent;
@@ -74,19 +73,146 @@ public class SurveyResponseService {
   private SurveyResponseRepository surveyResponseRepository;
 
   @Autowired
-  private ServiceUtility utility;
+  private SurveyResponseVersionRepository surveyResponseVersionRepository;
+
+  @Autowired
+  private UserIdRepository userIdRepository;
+
+  @Autowired
+  private Validator validator;
 
   @Transactional
-  public void handleSurveyResponse(final String userId, final String nameId, final SurveyResponseDto surveyResponse)
+  public void handleSurveyResponse(final User user, final String nameId, final SurveyResponseDto surveyResponse)
       throws SurveyResponseConflictException {
 
-    final User user = this.userRepository.findById(userId).get();
+    final SurveyGraph graph = this.surveyGraphComponent.getReleasedGraph(nameId).get();
+
+    final SurveyInstance instance = getInstance(graph, surveyResponse.getSurveyToken());
+
+    if (!checkIfDependencyIsSatisfied(user, graph))
+      throw new SurveyResponseConflictException(SurveyResponseConflictType.UNSATISFIED_DEPENDENCY);
+
+    final int index = graph.indexOf(surveyResponse.getQuestionId());
+
+    lockUser(user);
+    final StatusState state = lockStatus(user, instance);
+
+    final SurveyStatusChange statusChange =
+        persistSurveyResponse(user, instance, graph, index, surveyResponse, state);
+
+    if (statusChange.isSkipUpdate())
+      return;
+
+    updateSurveyStatus(user, instance, graph, state, new int[] {index}, statusChange.getNextQuestion());
+  }
+
+  /**
+   * Handles the specified survey responses in the given order within a single transaction. The user,
+   * the survey, the survey instances and the dependency status get resolved only once and the survey
+   * status gets updated only once per survey instance after all responses have been handled.
+   * Responses, which would be rejected by
+   * {@link #handleSurveyResponse(User, String, SurveyResponseDto)}, do not abort the batch but are
+   * reported within the result of that response.
+   *
+   * @param user the {@link User}
+   * @param nameId the nameId of the survey
+   * @param surveyResponses the ordered survey responses
+   * @return the result of each survey response in the order of the specified responses
+   */
+  @Transactional
+  public List<SurveyResponseResultDto> handleSurveyResponses(final User user, final String nameId,
+      final List<SurveyResponseDto> surveyResponses) {
+
+    if (surveyResponses == null || surveyResponses.isEmpty())
+      throw new IllegalArgumentException("No survey responses provided.");
+
+    final SurveyGraph graph = this.surveyGraphComponent.getReleasedGraph(nameId).get();
+
+    final boolean dependencySatisfied = checkIfDependencyIsSatisfied(user, graph);
+
+    lockUser(user);
+
+    final Map<String, SurveyInstance> instances = new HashMap<>();
+    final Map<Long, StatusState> states = new HashMap<>();
+    final Map<Long, SurveyInstance> changedInstances = new LinkedHashMap<>();
+    final Map<Long, List<Integer>> changedIndices = new HashMap<>();
+    final Map<Long, Question> nextQuestions = new HashMap<>();
+
+    final List<SurveyResponseResultDto> results = new ArrayList<>(surveyResponses.size());
+
+    for (final SurveyResponseDto surveyResponse : surveyResponses) {
+
+      final SurveyResponseResultDto.SurveyResponseResultDtoBuilder result = SurveyResponseResultDto.builder()
+          .questionId(surveyResponse == null ? null : surveyResponse.getQuestionId());
 
-    final Survey survey = this.surveyRepository
-        .findTopByNameIdAndReleaseStatusOrderByVersionDesc(nameId, ReleaseStatusType.RELEASED).get();
+      try {
+
+        validateConstraints(surveyResponse);
+
+        SurveyInstance instance = instances.get(surveyResponse.getSurveyToken());
+
+        if (instance == null) {
+          instance = getInstance(graph, surveyResponse.getSurveyToken());
+          instances.put(surveyResponse.getSurveyToken(), instance);
+
+        } else if (Instant.now().isAfter(instance.getEndTime()))
+          throw new SurveyResponseConflictException(SurveyResponseConflictType.INVALID_SURVEY_TOKEN);
+
+        if (!dependencySatisfied)
+          throw new SurveyResponseConflictException(SurveyResponseConflictType.UNSATISFIED_DEPENDENCY);
+
+        final int index = graph.indexOf(surveyResponse.getQuestionId());
+
+        final SurveyInstance current = instance;
+        final StatusState state = states.computeIfAbsent(instance.getId(), key -> lockStatus(user, current));
+
+        final SurveyStatusChange statusChange =
+            persistSurveyResponse(user, instance, graph, index, surveyResponse, state);
+
+        if (!statusChange.isSkipUpdate()) {
+          changedInstances.put(instance.getId(), instance);
+          changedIndices.computeIfAbsent(instance.getId(), key -> new ArrayList<>()).add(index);
+          nextQuestions.put(instance.getId(), statusChange.getNextQuestion());
+        }
+
+        results.add(result.accepted(true).build());
+
+      } catch (final SurveyResponseConflictException e) {
+        results.add(result.accepted(false).conflictType(e.getConflictType()).build());
+
+      } catch (final IllegalArgumentException e) {
+        results.add(result.accepted(false).error(e.getMessage()).build());
+      }
+    }
+
+    for (final SurveyInstance instance : changedInstances.values()) {
+      updateSurveyStatus(user, instance, graph, states.get(instance.getId()),
+          changedIndices.get(instance.getId()).stream().mapToInt(Integer::intValue).toArray(),
+          nextQuestions.get(instance.getId()));
+    }
+
+    return results;
+  }
+
+  private void validateConstraints(final SurveyResponseDto surveyResponse) {
+
+    if (surveyResponse == null)
+      throw new IllegalArgumentException("Invalid survey response.");
+
+    // Bean validation of the request body does not cascade into the elements of a list
+    final Set<ConstraintViolation<SurveyResponseDto>> violations = this.validator.validate(surveyResponse);
+
+    if (!violations.isEmpty())
+      throw new IllegalArgumentException(violations.stream()
+          .map(p -> p.getPropertyPath() + ": " + p.getMessage())
+          .sorted()
+          .collect(Collectors.joining(", ")));
+  }
+
+  private SurveyInstance getInstance(final SurveyGraph graph, final String token)
+      throws SurveyResponseConflictException {
 
-    final Optional<SurveyInstance> instanceOp = this.surveyInstanceRepository.findBySurveyAndToken(
-        survey, surveyResponse.getSurveyToken());
+    final Optional<SurveyInstance> instanceOp = this.surveyInstanceComponent.getInstance(graph.getSurvey(), token);
 
     if (instanceOp.isEmpty())
       throw new SurveyResponseConflictException(SurveyResponseConflictType.INVALID_SURVEY_TOKEN);
@@ -96,201 +222,290 @@ public class SurveyResponseService {
     if (Instant.now().isAfter(instance.getEndTime()))
       throw new SurveyResponseConflictException(SurveyResponseConflictType.INVALID_SURVEY_TOKEN);
 
-    if (!checkIfDependencyIsSatisfied(user, survey))
-      throw new SurveyResponseConflictException(SurveyResponseConflictType.UNSATISFIED_DEPENDENCY);
+    return instance;
+  }
 
-    final Question question = getQuestion(survey.getQuestions(), surveyResponse.getQuestionId());
+  /**
+   * @return the {@link SurveyStatusChange} containing the next question to be stored, if the status
+   *         must be updated
+   */
+  private SurveyStatusChange persistSurveyResponse(final User user, final SurveyInstance instance,
+      final SurveyGraph graph, final int index, final SurveyResponseDto surveyResponse, final StatusState state) {
 
-    if (question == null)
+    if (index == SurveyGraph.NONE)
       throw new IllegalArgumentException("Provided questionId is not part of the current survey.");
 
-    if (!validateResponse(question, surveyResponse))
+    if (!validateResponse(graph, index, surveyResponse))
       throw new IllegalArgumentException("Invalid survey response.");
 
     final SurveyStatusChange statusChange =
-        this.surveyResponseComponent.persistSurveyResponse(user, instance, question, surveyResponse);
+        this.surveyResponseComponent.persistSurveyResponse(user, instance, graph, index, surveyResponse,
+            state::nextVersion);
 
-    if (statusChange.isSkipUpdate())
-      return;
+    if (statusChange.isSkipUpdate() || statusChange.hasNextQuestion())
+      return statusChange;
 
-    final Question nextQuestion = statusChange.hasNextQuestion()
-        ? statusChange.getNextQuestion()
-        : seekNextQuestion(question);
+    return SurveyStatusChange.withNextQuestion(seekNextQuestion(graph, index));
+  }
+
+  /**
+   * Locks the user before any status gets read. A status, which does not exist yet, and a status
+   * stored before the progress got materialized can not be locked by their progress, so concurrent
+   * first responses of a user would otherwise create multiple statuses or allocate the same response
+   * versions. The user is always locked before any progress, so the order of the locks is the same
+   * in each transaction.
+   */
+  private void lockUser(final User user) {
+    this.userIdRepository.findForUpdateById(user.getId());
+  }
+
+  /**
+   * Reads and locks the {@link SurveyStatus} and its {@link SurveyProgress} before any response of
+   * the survey instance gets stored, as the progress serves the versions of the new responses. The
+   * user must have been locked by {@link #lockUser(User)} beforehand.
+   */
+  private StatusState lockStatus(final User user, final SurveyInstance instance) {
 
     final Optional<SurveyStatus> statusOp = this.surveyStatusRepository.findByUserAndSurveyInstance(user, instance);
 
-    if (statusOp.isEmpty()) {
+    // Responses are always stored along with a status
+    if (statusOp.isEmpty())
+      return new StatusState(null, null, -1);
+
+    final Optional<SurveyProgress> progressOp = this.surveyProgressRepository.findBySurveyStatus(statusOp.get());
+
+    if (progressOp.isPresent())
+      return new StatusState(statusOp.get(), progressOp.get(), progressOp.get().getResponseVersion());
+
+    // Status stored before the progress got materialized
+    return new StatusState(statusOp.get(), null,
+        this.surveyResponseVersionRepository.findMaxVersion(user, instance));
+  }
+
+  /**
+   * Updates the {@link SurveyStatus} and its {@link SurveyProgress}. The progress gets updated
+   * incrementally by applying the specified answered questions in the given order. The progress of a
+   * status, which has been stored before the progress got materialized, will be evaluated once based
+   * on the stored responses.
+   *
+   * @param state the state read by {@link #lockStatus(User, SurveyInstance)}
+   * @param indices the indices of the answered questions in the order they have been stored
+   */
+  private void updateSurveyStatus(final User user, final SurveyInstance instance, final SurveyGraph graph,
+      final StatusState state, final int[] indices, final Question nextQuestion) {
 
-      this.surveyStatusRepository.save(SurveyStatus.builder()
+    final SurveyStatus status;
+
+    if (state.getStatus() == null) {
+
+      status = this.surveyStatusRepository.save(SurveyStatus.builder()
           .nextQuestion(nextQuestion)
           .surveyInstance(instance)
           .user(user)
           .build());
+
     } else {
 
-      final SurveyStatus status = statusOp.get();
+      status = state.getStatus();
       status.setNextQuestion(nextQuestion);
       this.surveyStatusRepository.save(status);
     }
-  }
 
-  private Question getQuestion(final List<Question> questions, final Long questionId) {
+    final BitSet answered;
+    final SurveyProgress progress;
 
-    if (questions == null || questions.isEmpty() || questionId == null)
-      return null;
+    if (state.getProgress() != null) {
 
-    for (final Question question : questions) {
+      progress = state.getProgress();
+      answered = BitSet.valueOf(progress.getAnswered());
 
-      if (questionId.equals(question.getId()))
-        return question;
+      for (final int index : indices) {
+        graph.applyResponse(answered, index);
+      }
+
+    } else {
 
-      final List<Question> subQuestions = question.getSubQuestions();
-      if (subQuestions == null || subQuestions.isEmpty())
-        continue;
+      progress = SurveyProgress.builder().surveyStatus(status).build();
 
-      final Question result = getQuestion(subQuestions, questionId);
-      if (result != null)
-        return result;
+      if (state.getStatus() == null) {
+        answered = new BitSet();
+        for (final int index : indices) {
+          graph.applyResponse(answered, index);
+        }
+      } else {
+        answered = graph.getAnswered(
+            this.surveyResponseRepository.findByUserAndSurveyInstanceAndMaxVersion(user, instance));
+      }
     }
 
-    return null;
-  }
+    progress.setAnswered(answered.toByteArray());
+    progress.setCountAnswered(answered.cardinality());
+    progress.setCountRequired(graph.getCountQuestions());
+    progress.setStatus(graph.calculateStatus(answered));
+    progress.setResponseVersion(state.getVersion());
+    progress.setStatusVersion(progress.getStatusVersion() + 1);
 
-  private boolean checkIfDependencyIsSatisfied(final User user, final Survey survey) {
+    this.surveyProgressRepository.save(progress);
 
-    if (survey.getDependsOn() == null)
-      return true;
+    // Surveys depending on this instance must no longer be considered satisfied
+    if (progress.getStatus() != SurveyStatusType.COMPLETED)
+      this.surveyDependencyComponent.evict(user, instance);
+  }
 
-    final Period period = this.utility.getCurrentSurveyInstancePeriod(survey.getDependsOn());
+  private boolean checkIfDependencyIsSatisfied(final User user, final SurveyGraph graph) {
 
-    final Optional<SurveyInstance> dependsOnInstanceOp = this.surveyInstanceRepository
-        .findBySurveyAndStartTimeAndEndTime(survey.getDependsOn(), period.getStart(), period.getEnd());
+    if (graph.getDependsOnId() == null)
+      return true;
 
-    if (dependsOnInstanceOp.isEmpty())
-      return false;
+    final SurveyGraph dependsOn = this.surveyGraphComponent.getGraph(graph.getDependsOnId());
 
-    final List<SurveyResponse> surveyResponses =
-        this.surveyResponseRepository.findByUserAndSurveyInstanceAndMaxVersion(user, dependsOnInstanceOp.get());
+    final SurveyInstance dependsOnInstance = this.surveyInstanceComponent.getCurrentInstance(dependsOn.getSurvey());
 
-    return this.utility.calculateSurveyStatus(survey.getDependsOn(), surveyResponses) == SurveyStatusType.COMPLETED;
-  }
+    if (this.surveyDependencyComponent.isSatisfied(user, dependsOnInstance))
+      return true;
 
-  private Question seekNextQuestion(final Question question) {
+    final Optional<SurveyProgress> progressOp =
+        this.surveyProgressRepository.findByUserAndSurveyInstance(user, dependsOnInstance);
 
-    if (question == null)
-      return null;
+    final SurveyStatusType status = progressOp.isPresent()
+        ? progressOp.get().getStatus()
+        : dependsOn.calculateStatus(
+            this.surveyResponseRepository.findByUserAndSurveyInstanceAndMaxVersion(user, dependsOnInstance));
 
-    LOG.debug("Seeking next question. Current: {}", question.getQuestion());
+    if (status != SurveyStatusType.COMPLETED)
+      return false;
 
-    final Optional<Container> containerOp =
-        this.containerRepository.findByQuestionsIn(Collections.singleton(question));
+    this.surveyDependencyComponent.setSatisfied(user, dependsOnInstance);
+    return true;
+  }
 
-    if (containerOp.isEmpty())
-      return null;
+  private Question seekNextQuestion(final SurveyGraph graph, final int index) {
 
-    final Container container = containerOp.get();
+    LOG.debug("Seeking next question. Current: {}", graph.getQuestion(index).getQuestion());
 
-    Question result = null;
+    // Return next sibling if exists or go up a level and look for next sibling of parent question
+    for (int current = index; current != SurveyGraph.NONE; current = graph.getParent(current)) {
 
-    final Iterator<Question> it = container.getQuestions().iterator();
+      final int next = graph.getNextSibling(current);
 
-    while (it.hasNext()) {
-      // Find current question and return next sibling if exists
-      if (it.next().getId().equals(question.getId())) {
-        result = it.hasNext() ? it.next() : null;
-        break;
-      }
+      if (next != SurveyGraph.NONE)
+        return graph.getQuestion(next);
     }
 
-    // If no next sibling exists go up a level and look for next sibling of parent question
-    if (result == null)
-      return seekNextQuestion(container.getParent());
-    else
-      return result;
-
+    return null;
   }
 
-  private final boolean validateBoolResponse(final Question question, final SurveyResponseDto response) {
+  private final boolean validateBoolResponse(final SurveyGraph graph, final int index,
+      final SurveyResponseDto response) {
 
     return response.getBoolAnswer() != null;
   }
 
-  private final boolean validateTextResponse(final Question question, final SurveyResponseDto response) {
+  private final boolean validateTextResponse(final SurveyGraph graph, final int index,
+      final SurveyResponseDto response) {
 
     return response.getTextAnswer() != null && !response.getTextAnswer().isBlank()
-        && response.getTextAnswer().length() <= ((TextQuestion) question).getLength();
+        && response.getTextAnswer().length() <= graph.getLength(index);
   }
 
-  private final boolean validateChoiceResponse(final Question question, final SurveyResponseDto response) {
+  private final boolean validateChoiceResponse(final SurveyGraph graph, final int index,
+      final SurveyResponseDto response) {
 
     if (response.getAnswerIds() == null || response.getAnswerIds().isEmpty())
       return false;
 
-    final ChoiceQuestion choiceQuestion = (ChoiceQuestion) question;
-
-    if (choiceQuestion.getMultiple() == false && response.getAnswerIds().size() > 1)
+    if (!graph.isMultiple(index) && response.getAnswerIds().size() > 1)
       return false;
 
-    final List<Long> originAnswerIds =
-        choiceQuestion.getAnswers().stream().map(Answer::getId).collect(Collectors.toList());
-
     // Does modify the response object but the request will be denied if modification occurred
-    return !response.getAnswerIds().retainAll(originAnswerIds);
+    return !response.getAnswerIds().removeIf(p -> !graph.hasAnswer(index, p));
   }
 
-  private final boolean validateRangeResponse(final Question question, final SurveyResponseDto response) {
+  private final boolean validateRangeResponse(final SurveyGraph graph, final int index,
+      final SurveyResponseDto response) {
 
-    final RangeQuestion rangeQuestion = (RangeQuestion) question;
     return response.getNumberAnswer() != null
-        && response.getNumberAnswer() >= rangeQuestion.getMinValue()
-        && response.getNumberAnswer() <= rangeQuestion.getMaxValue();
+        && response.getNumberAnswer() >= graph.getMinValue(index)
+        && response.getNumberAnswer() <= graph.getMaxValue(index);
   }
 
-  private final boolean validateNumberResponse(final Question question, final SurveyResponseDto response) {
+  private final boolean validateNumberResponse(final SurveyGraph graph, final int index,
+      final SurveyResponseDto response) {
 
-    final NumberQuestion numberQuestion = (NumberQuestion) question;
     return response.getNumberAnswer() != null
-        && (numberQuestion.getMinValue() == null || response.getNumberAnswer() >= numberQuestion.getMinValue())
-        && (numberQuestion.getMaxValue() == null || response.getNumberAnswer() <= numberQuestion.getMaxValue());
+        && (graph.getMinValue(index) == null || response.getNumberAnswer() >= graph.getMinValue(index))
+        && (graph.getMaxValue(index) == null || response.getNumberAnswer() <= graph.getMaxValue(index));
   }
 
-  private boolean validateChecklistResponse(final Question question, final SurveyResponseDto response) {
+  private boolean validateChecklistResponse(final SurveyGraph graph, final int index,
+      final SurveyResponseDto response) {
 
     if (response.getChecklistAnswer() == null)
       return false;
 
-    final ChecklistQuestion checklistQuestion = (ChecklistQuestion) question;
-    final List<Long> originQuestionIds =
-        checklistQuestion.getEntries().stream().map(Question::getId).collect(Collectors.toList());
-
     // Does modify the response object but the request will be denied if modification occurred
-    return !response.getChecklistAnswer().keySet().retainAll(originQuestionIds);
+    return !response.getChecklistAnswer().keySet().removeIf(p -> !graph.isEntry(index, p));
   }
 
-  private boolean validateResponse(final Question question, final SurveyResponseDto response) {
+  private boolean validateResponse(final SurveyGraph graph, final int index, final SurveyResponseDto response) {
 
     /*
      * Skipped overwrites everything. If skipped is set to true, everything else can be ignored
      */
-    if (question.isOptional() && Boolean.TRUE.equals(response.getSkipped()))
+    if (graph.isOptional(index) && Boolean.TRUE.equals(response.getSkipped()))
       return true;
 
-    switch (question.getType()) {
+    switch (graph.getType(index)) {
       case BOOL:
-        return validateBoolResponse(question, response);
+        return validateBoolResponse(graph, index, response);
       case CHOICE:
-        return validateChoiceResponse(question, response);
+        return validateChoiceResponse(graph, index, response);
       case RANGE:
-        return validateRangeResponse(question, response);
+        return validateRangeResponse(graph, index, response);
       case TEXT:
-        return validateTextResponse(question, response);
+        return validateTextResponse(graph, index, response);
       case NUMBER:
-        return validateNumberResponse(question, response);
+        return validateNumberResponse(graph, index, response);
       case CHECKLIST:
-        return validateChecklistResponse(question, response);
+        return validateChecklistResponse(graph, index, response);
       case CHECKLIST_ENTRY:
       default:
         return false;
     }
   }
+
+  /**
+   * The status and the progress of a survey instance, which have been read before storing responses,
+   * along with the highest version of the stored responses.
+   */
+  private static class StatusState {
+
+    private final SurveyStatus status;
+
+    private final SurveyProgress progress;
+
+    private int version;
+
+    StatusState(final SurveyStatus status, final SurveyProgress progress, final int version) {
+      this.status = status;
+      this.progress = progress;
+      this.version = version;
+    }
+
+    SurveyStatus getStatus() {
+      return this.status;
+    }
+
+    SurveyProgress getProgress() {
+      return this.progress;
+    }
+
+    int getVersion() {
+      return this.version;
+    }
+
+    int nextVersion() {
+      return ++this.version;
+    }
+  }
 }
@@ -3,29 +3,37 @@
  */
 package one.tracking.framework.service;
 
-import static one.tracking.framework.entity.DataConstants.TOKEN_SURVEY_LENGTH;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.TreeMap;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import one.tracking.framework.component.SurveyDefinitionComponent;
+import one.tracking.framework.component.SurveyGraphComponent;
+import one.tracking.framework.component.SurveyInstanceComponent;
 import one.tracking.framework.domain.Period;
+import one.tracking.framework.domain.SerializedSurvey;
+import one.tracking.framework.domain.SurveyGraph;
 import one.tracking.framework.domain.SurveyStatusType;
+import one.tracking.framework.domain.SurveyVersion;
 import one.tracking.framework.dto.SurveyStatusDto;
 import one.tracking.framework.entity.SurveyInstance;
-import one.tracking.framework.entity.SurveyResponse;
+import one.tracking.framework.entity.SurveyProgress;
 import one.tracking.framework.entity.SurveyStatus;
 import one.tracking.framework.entity.User;
 import one.tracking.framework.entity.meta.ReleaseStatusType;
 import one.tracking.framework.entity.meta.Survey;
-import one.tracking.framework.repo.SurveyInstanceRepository;
+import one.tracking.framework.repo.SurveyOverviewRepository;
+import one.tracking.framework.repo.SurveyProgressRepository;
 import one.tracking.framework.repo.SurveyRepository;
 import one.tracking.framework.repo.SurveyResponseRepository;
 import one.tracking.framework.repo.SurveyStatusRepository;
-import one.tracking.framework.repo.UserRepository;
-import one.tracking.framework.support.ServiceUtility;
+import one.tracking.framework.repo.SurveyTagRepository;
 
 /**
  * @author Marko Voß
@@ -35,16 +43,16 @@ import one.tracking.framework.support.ServiceUtility;
 public class SurveyService {
 
   @Autowired
-  private ServiceUtility utility;
+  private SurveyGraphComponent surveyGraphComponent;
 
   @Autowired
-  private SurveyRepository surveyRepository;
+  private SurveyDefinitionComponent surveyDefinitionComponent;
 
   @Autowired
-  private SurveyInstanceRepository surveyInstanceRepository;
+  private SurveyRepository surveyRepository;
 
   @Autowired
-  private UserRepository userRepository;
+  private SurveyInstanceComponent surveyInstanceComponent;
 
   @Autowired
   private SurveyResponseRepository surveyResponseRepository;
@@ -52,15 +60,56 @@ public class SurveyService {
   @Autowired
   private SurveyStatusRepository surveyStatusRepository;
 
-  public Survey getReleasedSurvey(final String nameId) {
+  @Autowired
+  private SurveyProgressRepository surveyProgressRepository;
+
+  @Autowired
+  private SurveyOverviewRepository surveyOverviewRepository;
+
+  @Autowired
+  private SurveyTagRepository surveyTagRepository;
+
+  public SurveyVersion getReleasedSurveyVersion(final String nameId) {
 
-    return this.surveyRepository.findTopByNameIdAndReleaseStatusOrderByVersionDesc(nameId, ReleaseStatusType.RELEASED)
-        .get();
+    return this.surveyDefinitionComponent.getReleasedVersion(nameId).get();
   }
 
-  public SurveyStatusDto getSurveyOverview(final String nameId, final String userId) {
+  public SerializedSurvey getSurveyDefinition(final SurveyVersion version) {
+
+    return this.surveyDefinitionComponent.getDefinition(version);
+  }
+
+  public long getSurveyDefinitionLastModified(final SurveyVersion version) {
+
+    return this.surveyDefinitionComponent.getLastModified(version);
+  }
+
+  /**
+   * Computes the entity tag of the survey overview of the specified user without reading any status
+   * or survey. The tag consists of the status version of the user, which changes on each status
+   * change, and a hash of the current instances of the latest released survey versions, which changes
+   * on each release and on each new survey period. Survey graphs and current instances are cached,
+   * so the tag is computed by two projection queries.
+   *
+   * @param user the {@link User}
+   * @return the quoted entity tag of the survey overview
+   */
+  public String getSurveyOverviewTag(final User user) {
+
+    long hash = 1;
+
+    for (final Long surveyId : this.surveyTagRepository.findLatestIdsByReleaseStatus(ReleaseStatusType.RELEASED)) {
 
-    final User user = this.userRepository.findById(userId).get();
+      final SurveyGraph graph = this.surveyGraphComponent.getGraph(surveyId);
+
+      hash = 31 * hash + surveyId;
+      hash = 31 * hash + this.surveyInstanceComponent.getCurrentInstance(graph.getSurvey()).getId();
+    }
+
+    return "\"" + this.surveyTagRepository.sumStatusVersionsByUser(user) + "-" + Long.toHexString(hash) + "\"";
+  }
+
+  public SurveyStatusDto getSurveyOverview(final String nameId, final User user) {
 
     final Optional<Survey> surveyOp =
         this.surveyRepository.findTopByNameIdAndReleaseStatusOrderByVersionDesc(nameId, ReleaseStatusType.RELEASED);
@@ -71,57 +120,116 @@ public class SurveyService {
     return getStatus(surveyOp.get(), user);
   }
 
-  public Collection<SurveyStatusDto> getSurveyOverview(final String userId) {
+  /**
+   * Reads the status of the latest released version of each survey. The overview is read by a fixed
+   * number of queries regardless of the number of surveys.
+   *
+   * @param user the {@link User}
+   * @return the status of each survey ordered by nameId
+   */
+  public Collection<SurveyStatusDto> getSurveyOverview(final User user) {
 
-    final User user = this.userRepository.findById(userId).get();
+    final List<Survey> surveys = this.surveyOverviewRepository.findLatestByReleaseStatus(ReleaseStatusType.RELEASED);
 
-    // Use TreeMap to keep order by nameId
-    final Map<String, SurveyStatusDto> result = new TreeMap<>();
+    if (surveys.isEmpty())
+      return Collections.emptyList();
 
-    for (final Survey survey : this.surveyRepository
-        .findAllByReleaseStatusOrderByNameIdAscVersionDesc(ReleaseStatusType.RELEASED)) {
+    final List<SurveyGraph> graphs = new ArrayList<>(surveys.size());
+    for (final Survey survey : surveys) {
+      graphs.add(this.surveyGraphComponent.getGraph(survey));
+    }
+
+    // Current instances are cached, so they do not need to be read on each request
+    final Map<Long, SurveyInstance> instances = new HashMap<>();
+    for (final SurveyGraph graph : graphs) {
+      instances.put(graph.getSurveyId(), this.surveyInstanceComponent.getCurrentInstance(graph.getSurvey()));
+    }
 
-      // Collect each survey only once by its top most released version
-      if (result.get(survey.getNameId()) != null)
-        continue;
+    final Map<Long, SurveyStatus> statuses = new HashMap<>();
+    final Map<Long, SurveyProgress> progresses = new HashMap<>();
 
-      final SurveyStatusDto status = getStatus(survey, user);
-      if (status != null)
-        result.put(survey.getNameId(), status);
+    for (final Object[] row : this.surveyOverviewRepository.findStatusesByUserAndSurveyInstanceIn(user,
+        instances.values())) {
+
+      final SurveyStatus status = (SurveyStatus) row[0];
+      final Long instanceId = status.getSurveyInstance().getId();
+
+      statuses.put(instanceId, status);
+      if (row[1] != null)
+        progresses.put(instanceId, (SurveyProgress) row[1]);
+    }
+
+    final List<SurveyStatusDto> result = new ArrayList<>(graphs.size());
+
+    for (final SurveyGraph graph : graphs) {
+
+      final SurveyInstance instance = instances.get(graph.getSurveyId());
+
+      result.add(getStatus(graph, instance, user,
+          statuses.get(instance.getId()),
+          progresses.get(instance.getId())));
     }
 
-    return result.values();
+    return result;
   }
 
   private SurveyStatusDto getStatus(final Survey survey, final User user) {
 
-    final SurveyInstance instance = getCurrentInstance(survey);
+    final SurveyGraph graph = this.surveyGraphComponent.getGraph(survey);
+
+    final SurveyInstance instance = this.surveyInstanceComponent.getCurrentInstance(graph.getSurvey());
 
     if (instance == null)
       return null;
 
-    final Optional<SurveyStatus> surveyStatusOp =
-        this.surveyStatusRepository.findByUserAndSurveyInstance(user, instance);
+    final Optional<SurveyProgress> progressOp =
+        this.surveyProgressRepository.findByUserAndSurveyInstance(user, instance);
 
-    Long nextQuestionId = null;
+    if (progressOp.isPresent())
+      return getStatus(graph, instance, user, progressOp.get().getSurveyStatus(), progressOp.get());
 
-    if (surveyStatusOp.isPresent()) {
-      final SurveyStatus surveyStatus = surveyStatusOp.get();
-      nextQuestionId = surveyStatus.getNextQuestion() == null ? null : surveyStatus.getNextQuestion().getId();
-    }
+    return getStatus(graph, instance, user,
+        this.surveyStatusRepository.findByUserAndSurveyInstance(user, instance).orElse(null), null);
+  }
+
+  private SurveyStatusDto getStatus(final SurveyGraph graph, final SurveyInstance instance, final User user,
+      final SurveyStatus surveyStatus, final SurveyProgress progress) {
+
+    final SurveyStatusType status;
+    final int countAnswered;
+
+    if (progress != null) {
+
+      status = progress.getStatus();
+      countAnswered = progress.getCountAnswered();
+
+    } else if (surveyStatus == null) {
 
-    final List<SurveyResponse> surveyResponses =
-        this.surveyResponseRepository.findByUserAndSurveyInstanceAndMaxVersion(user, instance);
+      // Responses are always stored along with a status
+      status = SurveyStatusType.INCOMPLETE;
+      countAnswered = 0;
 
-    final SurveyStatusType status = this.utility.calculateSurveyStatus(survey, surveyResponses);
+    } else {
+
+      // Status stored before the progress got materialized
+      final BitSet answered = graph.getAnswered(
+          this.surveyResponseRepository.findByUserAndSurveyInstanceAndMaxVersion(user, instance));
+      status = graph.calculateStatus(answered);
+      countAnswered = answered.cardinality();
+    }
+
+    final Long nextQuestionId = surveyStatus == null || surveyStatus.getNextQuestion() == null
+        ? null
+        : surveyStatus.getNextQuestion().getId();
 
     return SurveyStatusDto.builder()
-        .nameId(survey.getNameId())
-        .dependsOn(survey.getDependsOn() == null ? null : survey.getDependsOn().getNameId())
+        .nameId(graph.getNameId())
+        .dependsOn(graph.getDependsOnNameId())
         .status(status)
-        .title(survey.getTitle())
-        .description(survey.getDescription())
-        .countQuestions(survey.getQuestions().size())
+        .title(graph.getTitle())
+        .description(graph.getDescription())
+        .countQuestions(graph.getCountQuestions())
+        .countAnswered(countAnswered)
         .nextQuestionId(nextQuestionId)
         .token(instance.getToken())
         .startTime(Period.INFINITE.getStart().equals(instance.getStartTime())
@@ -132,32 +240,4 @@ public class SurveyService {
             : instance.getEndTime().toEpochMilli())
         .build();
   }
-
-  /**
-   * Self-healing implementation: If the current survey instance does not yet exist, it will be
-   * created on request.
-   *
-   * @param survey
-   * @return
-   */
-  public SurveyInstance getCurrentInstance(final Survey survey) {
-
-    return getInstance(survey, this.utility.getCurrentSurveyInstancePeriod(survey));
-  }
-
-  private SurveyInstance getInstance(final Survey survey, final Period period) {
-
-    final Optional<SurveyInstance> instanceOp =
-        this.surveyInstanceRepository.findBySurveyAndStartTimeAndEndTime(survey, period.getStart(), period.getEnd());
-
-    if (instanceOp.isPresent())
-      return instanceOp.get();
-
-    return this.surveyInstanceRepository.save(SurveyInstance.builder()
-        .survey(survey)
-        .startTime(period.getStart())
-        .endTime(period.getEnd())
-        .token(this.utility.generateString(TOKEN_SURVEY_LENGTH))
-        .build());
-  }
 }
@@ -3,16 +3,22 @@
  */
 package one.tracking.framework.web;
 
+import java.util.Collections;
+import java.util.List;
 import javax.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import one.tracking.framework.component.AuthenticatedUser;
+import one.tracking.framework.component.StepCountWriteBehindComponent;
+import one.tracking.framework.domain.StepCountRollupType;
 import one.tracking.framework.dto.StepCountDto;
+import one.tracking.framework.dto.StepCountRollupDto;
+import one.tracking.framework.exception.StepCountQueueFullException;
 import one.tracking.framework.service.HealthService;
-import springfox.documentation.annotations.ApiIgnore;
 
 /**
  * @author Marko Voß
@@ -25,14 +31,48 @@ public class HealthController {
   @Autowired
   private HealthService healthService;
 
+  @Autowired
+  private AuthenticatedUser authenticatedUser;
+
+  /*
+   * Only available if the write-behind mode is enabled
+   */
+  @Autowired(required = false)
+  private StepCountWriteBehindComponent stepCountWriteBehindComponent;
+
   @RequestMapping(method = RequestMethod.POST, path = "/stepcount")
   public void postStepCount(
       @RequestBody
       @Valid
-      final StepCountDto stepCountDto,
-      @ApiIgnore
-      final Authentication authentication) {
+      final StepCountDto stepCountDto) throws StepCountQueueFullException {
+
+    if (this.stepCountWriteBehindComponent != null)
+      this.stepCountWriteBehindComponent.offer(this.authenticatedUser.getUserId(),
+          Collections.singletonList(stepCountDto));
+    else
+      this.healthService.storeStepCount(this.authenticatedUser.getUser(), stepCountDto);
+  }
+
+  @RequestMapping(method = RequestMethod.POST, path = "/stepcounts")
+  public void postStepCounts(
+      @RequestBody
+      final List<StepCountDto> stepCountDtos) throws StepCountQueueFullException {
+
+    if (this.stepCountWriteBehindComponent != null)
+      this.stepCountWriteBehindComponent.offer(this.authenticatedUser.getUserId(), stepCountDtos);
+    else
+      this.healthService.storeStepCounts(this.authenticatedUser.getUser(), stepCountDtos);
+  }
+
+  @RequestMapping(method = RequestMethod.GET, path = "/stepcounts")
+  public List<StepCountRollupDto> getStepCounts(
+      @RequestParam("type")
+      final StepCountRollupType type,
+      @RequestParam("from")
+      final long from,
+      @RequestParam("to")
+      final long to) {
 
-    this.healthService.storeStepCount(authentication.getName(), stepCountDto);
+    return this.healthService.getStepCountRollups(this.authenticatedUser.getUser(), type, from, to);
   }
 }
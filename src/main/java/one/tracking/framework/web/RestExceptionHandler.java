@@ -26,6 +26,7 @@ import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 import one.tracking.framework.dto.SurveyResponseConflictDto;
 import one.tracking.framework.exception.ConflictException;
+import one.tracking.framework.exception.StepCountQueueFullException;
 import one.tracking.framework.exception.SurveyResponseConflictException;
 
 /**
@@ -108,4 +109,16 @@ public class RestExceptionHandler extends ResponseEntityExceptionHandler {
         .conflictType(e.getConflictType())
         .build());
   }
+
+  @ExceptionHandler(value = {StepCountQueueFullException.class})
+  @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+  public ResponseEntity<String> tooManyRequests(final Exception e) {
+
+    if (!LOG.isTraceEnabled())
+      LOG.debug(e.getMessage());
+    else
+      LOG.trace(e.getMessage(), e);
+
+    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(e.getMessage());
+  }
 }
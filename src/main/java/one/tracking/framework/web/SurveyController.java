@@ -4,22 +4,33 @@
 package one.tracking.framework.web;
 
 import java.util.Collection;
+import java.util.List;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.Authentication;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
-import one.tracking.framework.dto.DtoMapper;
+import org.springframework.web.context.request.WebRequest;
+import io.swagger.annotations.ApiOperation;
+import one.tracking.framework.component.AuthenticatedUser;
+import one.tracking.framework.domain.SerializedSurvey;
+import one.tracking.framework.domain.SurveyVersion;
 import one.tracking.framework.dto.SurveyResponseDto;
+import one.tracking.framework.dto.SurveyResponseResultDto;
 import one.tracking.framework.dto.SurveyStatusDto;
 import one.tracking.framework.dto.meta.SurveyDto;
+import one.tracking.framework.entity.User;
 import one.tracking.framework.exception.SurveyResponseConflictException;
 import one.tracking.framework.service.SurveyResponseService;
 import one.tracking.framework.service.SurveyService;
-import springfox.documentation.annotations.ApiIgnore;
 
 /**
  * @author Marko Voß
@@ -29,36 +40,68 @@ import springfox.documentation.annotations.ApiIgnore;
 @RequestMapping
 public class SurveyController {
 
+  private static final String GZIP = "gzip";
+
   @Autowired
   private SurveyService surveyService;
 
   @Autowired
   private SurveyResponseService surveyResponseService;
 
-  @RequestMapping(method = RequestMethod.GET, path = "/survey/{nameId}")
-  public SurveyDto getSurvey(
+  @Autowired
+  private AuthenticatedUser authenticatedUser;
+
+  @ApiOperation(value = "Returns the latest released version of the specified survey", response = SurveyDto.class)
+  @RequestMapping(method = RequestMethod.GET, path = "/survey/{nameId}", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<byte[]> getSurvey(
       @PathVariable("nameId")
-      final String nameId) {
+      final String nameId,
+      @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false)
+      final String acceptEncoding,
+      final WebRequest request,
+      final HttpServletResponse servletResponse) {
+
+    final SurveyVersion version = this.surveyService.getReleasedSurveyVersion(nameId);
+    final boolean gzip = acceptsGzip(acceptEncoding);
+
+    // Sent along with 304 responses as well
+    servletResponse.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
 
-    return DtoMapper.map(this.surveyService.getReleasedSurvey(nameId));
+    if (request.checkNotModified(version.getETag(gzip), this.surveyService.getSurveyDefinitionLastModified(version)))
+      return null;
+
+    final SerializedSurvey survey = this.surveyService.getSurveyDefinition(version);
+
+    final ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_JSON)
+        .cacheControl(CacheControl.noCache().cachePrivate())
+        .lastModified(survey.getLastModified());
+
+    if (gzip)
+      return response.header(HttpHeaders.CONTENT_ENCODING, GZIP).body(survey.getGzip());
+
+    return response.body(survey.getJson());
   }
 
   @RequestMapping(method = RequestMethod.GET, path = "/overview")
-  public Collection<SurveyStatusDto> getSurveyOverviews(
-      @ApiIgnore
-      final Authentication authentication) {
+  public ResponseEntity<Collection<SurveyStatusDto>> getSurveyOverviews(final WebRequest request) {
 
-    return this.surveyService.getSurveyOverview(authentication.getName());
+    final User user = this.authenticatedUser.getUser();
+
+    if (request.checkNotModified(this.surveyService.getSurveyOverviewTag(user)))
+      return null;
+
+    return ResponseEntity.ok()
+        .cacheControl(CacheControl.noCache().cachePrivate())
+        .body(this.surveyService.getSurveyOverview(user));
   }
 
   @RequestMapping(method = RequestMethod.GET, path = "/overview/{nameId}")
   public SurveyStatusDto getSurveyOverview(
       @PathVariable("nameId")
-      final String nameId,
-      @ApiIgnore
-      final Authentication authentication) {
+      final String nameId) {
 
-    return this.surveyService.getSurveyOverview(nameId, authentication.getName());
+    return this.surveyService.getSurveyOverview(nameId, this.authenticatedUser.getUser());
   }
 
   @RequestMapping(method = RequestMethod.POST, path = "/survey/{nameId}/answer")
@@ -67,11 +110,45 @@ public class SurveyController {
       final String nameId,
       @RequestBody
       @Valid
-      final SurveyResponseDto surveyResponse,
-      @ApiIgnore
-      final Authentication authentication) throws SurveyResponseConflictException {
+      final SurveyResponseDto surveyResponse) throws SurveyResponseConflictException {
+
+    this.surveyResponseService.handleSurveyResponse(this.authenticatedUser.getUser(), nameId, surveyResponse);
+  }
+
+  @RequestMapping(method = RequestMethod.POST, path = "/survey/{nameId}/answers")
+  public List<SurveyResponseResultDto> postSurveyResponses(
+      @PathVariable("nameId")
+      final String nameId,
+      @RequestBody
+      final List<SurveyResponseDto> surveyResponses) {
 
-    this.surveyResponseService.handleSurveyResponse(authentication.getName(), nameId, surveyResponse);
+    return this.surveyResponseService.handleSurveyResponses(this.authenticatedUser.getUser(), nameId,
+        surveyResponses);
   }
 
+  /**
+   * @param acceptEncoding the value of the <code>Accept-Encoding</code> header
+   * @return <code>true</code> if the client accepts gzip encoded content
+   */
+  private static boolean acceptsGzip(final String acceptEncoding) {
+
+    if (acceptEncoding == null)
+      return false;
+
+    for (final String coding : acceptEncoding.split(",")) {
+
+      final String[] parameters = coding.split(";");
+      if (!GZIP.equalsIgnoreCase(parameters[0].trim()))
+        continue;
+
+      for (int i = 1; i < parameters.length; i++) {
+        // gzip;q=0 explicitly refuses gzip
+        if (parameters[i].trim().matches("q=0(\\.0{0,3})?"))
+          return false;
+      }
+      return true;
+    }
+
+    return false;
+  }
 }
@@ -0,0 +1,127 @@
+/**
+ *
+ */
+package one.tracking.framework.domain;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Test;
+import one.tracking.framework.domain.StepCountTimeline.Segment;
+
+/**
+ * @author Marko Voß
+ *
+ */
+public class StepCountTimelineTest {
+
+  private static final long HOUR = Duration.ofHours(1).toMillis();
+
+  @Test
+  public void testOrderIndependence() {
+
+    // Monday
+    final Instant week = Instant.parse("2020-05-04T00:00:00Z");
+    final int hours = 9 * 24;
+    final int[] durations = {1, 2, 3, 6, 12, 24};
+
+    final Random random = new Random(4711);
+
+    for (int round = 0; round < 20; round++) {
+
+      // Overlapping step counts aligned to hours with an integral rate per hour
+      final List<long[]> stepCounts = new ArrayList<>();
+      final long[] expected = new long[hours];
+
+      for (int i = 0; i < 60; i++) {
+
+        final int duration = durations[random.nextInt(durations.length)];
+        final int start = random.nextInt(hours - duration + 1);
+        final int rate = random.nextInt(500);
+
+        final long startTime = week.toEpochMilli() + start * HOUR;
+        stepCounts.add(new long[] {startTime, startTime + duration * HOUR, rate * duration});
+
+        for (int hour = start; hour < start + duration; hour++) {
+          expected[hour] = Math.max(expected[hour], rate);
+        }
+      }
+
+      // Same step counts in two different orders
+      Collections.shuffle(stepCounts, random);
+      final StepCountTimeline timeline = createTimeline(stepCounts);
+
+      Collections.shuffle(stepCounts, random);
+      final StepCountTimeline other = createTimeline(stepCounts);
+
+      // The timeline does not depend on the order of the step counts
+      assertThat(new ArrayList<>(timeline.getSegments()), is(new ArrayList<>(other.getSegments())));
+
+      // Restoring the timeline from its segments yields the same timeline
+      assertThat(new ArrayList<>(new StepCountTimeline(timeline.getSegments()).getSegments()),
+          is(new ArrayList<>(timeline.getSegments())));
+
+      Segment previous = null;
+
+      for (final Segment segment : timeline.getSegments()) {
+
+        assertThat(segment.getStart() < segment.getEnd(), is(true));
+
+        // Segments do not overlap and adjacent segments have different rates
+        if (previous != null) {
+          assertThat(previous.getEnd() > segment.getStart(), is(false));
+          if (previous.getEnd() == segment.getStart())
+            assertThat(previous.getCount() == segment.getCount()
+                && previous.getDuration() == segment.getDuration(), is(false));
+        }
+
+        previous = segment;
+      }
+
+      long expectedTotal = 0;
+
+      for (int hour = 0; hour < hours; hour++) {
+
+        final long from = week.toEpochMilli() + hour * HOUR;
+
+        assertThat(Math.round(timeline.sum(from, from + HOUR)), is(expected[hour]));
+        expectedTotal += expected[hour];
+      }
+
+      assertThat(Math.round(timeline.sum(week.toEpochMilli(), week.toEpochMilli() + hours * HOUR)),
+          is(expectedTotal));
+
+      for (final StepCountRollupType type : StepCountRollupType.values()) {
+
+        final Map<Instant, Long> expectedRollups = new TreeMap<>();
+
+        for (int hour = 0; hour < hours; hour++) {
+          expectedRollups.merge(type.getStart(week.plus(Duration.ofHours(hour))), expected[hour], Long::sum);
+        }
+
+        for (final Map.Entry<Instant, Long> entry : expectedRollups.entrySet()) {
+          assertThat(Math.round(timeline.sum(entry.getKey().toEpochMilli(),
+              type.getEnd(entry.getKey()).toEpochMilli())), is(entry.getValue()));
+        }
+      }
+    }
+  }
+
+  private static StepCountTimeline createTimeline(final List<long[]> stepCounts) {
+
+    final StepCountTimeline timeline = new StepCountTimeline();
+
+    for (final long[] stepCount : stepCounts) {
+      timeline.add(stepCount[0], stepCount[1], (int) stepCount[2]);
+    }
+
+    return timeline;
+  }
+}
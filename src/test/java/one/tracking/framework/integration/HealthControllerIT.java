@@ -7,10 +7,17 @@ import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertThat;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import org.junit.Before;
 import org.junit.Test;
@@ -22,12 +29,14 @@ import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import one.tracking.framework.SurveyApplication;
+import one.tracking.framework.domain.StepCountRollupType;
 import one.tracking.framework.dto.StepCountDto;
 import one.tracking.framework.entity.User;
 import one.tracking.framework.entity.health.StepCount;
@@ -45,13 +54,14 @@ import one.tracking.framework.support.JWTHelper;
 // @SpringBootTest(classes = SurveyApplication.class, webEnvironment =
 // SpringBootTest.WebEnvironment.DEFINED_PORT)
 @SpringBootTest(classes = SurveyApplication.class)
-@DirtiesContext
+@DirtiesContext(classMode = ClassMode.AFTER_EACH_TEST_METHOD)
 public class HealthControllerIT {
 
   // private static final Logger LOG = LoggerFactory.getLogger(HealthControllerIT.class);
 
   private static final String ENDPOINT_HEALTH = "/health";
   private static final String ENDPOINT_STEPCOUNT = ENDPOINT_HEALTH + "/stepcount";
+  private static final String ENDPOINT_STEPCOUNTS = ENDPOINT_HEALTH + "/stepcounts";
 
   @Autowired
   private MockMvc mockMvc;
@@ -245,4 +255,222 @@ public class HealthControllerIT {
     assertThat(stepCountOp.get().getEndTime(), is(equalTo(endTime)));
     assertThat(stepCountOp.get().getVersion(), is(1));
   }
+
+  @Test
+  public void testStepCounts() throws Exception {
+
+    final Instant day = Instant.parse("2020-05-01T00:00:00Z");
+
+    // Test empty
+    this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_STEPCOUNTS)
+        .with(csrf())
+        .content(this.mapper.writeValueAsBytes(Collections.emptyList()))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isBadRequest());
+
+    // Test any invalid entry rejects the whole request
+    this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_STEPCOUNTS)
+        .with(csrf())
+        .content(this.mapper.writeValueAsBytes(Arrays.asList(
+            createStepCount(day, Duration.ofHours(1), 100),
+            createStepCount(day.plus(Duration.ofHours(2)), Duration.ofHours(-1), 100))))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isBadRequest());
+
+    // Test exceeding the maximum number of step counts (default: 5000)
+    final List<StepCountDto> tooMany = new ArrayList<>();
+    for (int i = 0; i <= 5000; i++) {
+      tooMany.add(createStepCount(day.plus(Duration.ofMinutes(i)), Duration.ofMinutes(1), 10));
+    }
+
+    this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_STEPCOUNTS)
+        .with(csrf())
+        .content(this.mapper.writeValueAsBytes(tooMany))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isBadRequest());
+
+    // Test exceeding the maximum interval of a step count (default: 7 days)
+    this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_STEPCOUNTS)
+        .with(csrf())
+        .content(this.mapper.writeValueAsBytes(Arrays.asList(
+            createStepCount(day, Duration.ofHours(1), 100),
+            StepCountDto.builder().count(100).startTime(0L).endTime(253402300799999L).build())))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isBadRequest());
+
+    this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_STEPCOUNT)
+        .with(csrf())
+        .content(this.mapper.writeValueAsBytes(createStepCount(day, Duration.ofDays(7).plusMillis(1), 100)))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isBadRequest());
+
+    this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_STEPCOUNT)
+        .with(csrf())
+        .content(this.mapper.writeValueAsBytes(createStepCount(day, Duration.ofDays(7), 100)))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk());
+
+    assertThat(this.stepCountRepository.findByUserAndStartTimeAndEndTime(this.user, day,
+        day.plus(Duration.ofHours(1))).isPresent(), is(false));
+
+    // An existing interval, which will be increased
+    this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_STEPCOUNT)
+        .with(csrf())
+        .content(this.mapper.writeValueAsBytes(createStepCount(day, Duration.ofHours(1), 50)))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk());
+
+    // An existing interval, which will not be decreased
+    this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_STEPCOUNT)
+        .with(csrf())
+        .content(this.mapper.writeValueAsBytes(createStepCount(day.plus(Duration.ofHours(1)), Duration.ofHours(1),
+            5000)))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk());
+
+    // Hourly buckets of a whole day
+    final List<StepCountDto> stepCounts = new ArrayList<>();
+    for (int hour = 0; hour < 24; hour++) {
+      stepCounts.add(createStepCount(day.plus(Duration.ofHours(hour)), Duration.ofHours(1), 100 + hour));
+    }
+    // Duplicate intervals keep the highest count
+    stepCounts.add(createStepCount(day.plus(Duration.ofHours(2)), Duration.ofHours(1), 1000));
+    stepCounts.add(createStepCount(day.plus(Duration.ofHours(3)), Duration.ofHours(1), 1));
+
+    this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_STEPCOUNTS)
+        .with(csrf())
+        .content(this.mapper.writeValueAsBytes(stepCounts))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk());
+
+    assertStepCount(day, 100, 1);
+    assertStepCount(day.plus(Duration.ofHours(1)), 5000, 0);
+    assertStepCount(day.plus(Duration.ofHours(2)), 1000, 0);
+    assertStepCount(day.plus(Duration.ofHours(3)), 103, 0);
+    assertStepCount(day.plus(Duration.ofHours(23)), 123, 0);
+  }
+
+  @Test
+  public void testStepCountRollups() throws Exception {
+
+    // Monday
+    final Instant week = Instant.parse("2020-05-04T00:00:00Z");
+
+    final List<StepCountDto> stepCounts = new ArrayList<>();
+    for (int hour = 0; hour < 24; hour++) {
+      stepCounts.add(createStepCount(week.plus(Duration.ofHours(hour)), Duration.ofHours(1), 100));
+    }
+    for (int hour = 0; hour < 10; hour++) {
+      stepCounts.add(createStepCount(week.plus(Duration.ofDays(1)).plus(Duration.ofHours(hour)), Duration.ofHours(1),
+          100));
+    }
+    // Sunday of the previous week
+    stepCounts.add(createStepCount(week.minus(Duration.ofHours(1)), Duration.ofHours(1), 7));
+
+    this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_STEPCOUNTS)
+        .with(csrf())
+        .content(this.mapper.writeValueAsBytes(stepCounts))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk());
+
+    // Only the increase gets added
+    this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_STEPCOUNT)
+        .with(csrf())
+        .content(this.mapper.writeValueAsBytes(createStepCount(week, Duration.ofHours(1), 150)))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk());
+
+    // Decreases are ignored
+    this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_STEPCOUNT)
+        .with(csrf())
+        .content(this.mapper.writeValueAsBytes(createStepCount(week, Duration.ofHours(1), 10)))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk());
+
+    this.mockMvc.perform(MockMvcRequestBuilders.get(ENDPOINT_STEPCOUNTS)
+        .param("type", StepCountRollupType.DAILY.name())
+        .param("from", String.valueOf(week.toEpochMilli()))
+        .param("to", String.valueOf(week.plus(Duration.ofDays(7)).toEpochMilli()))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(2)))
+        .andExpect(jsonPath("$[0].count", is(2450)))
+        .andExpect(jsonPath("$[0].startTime", is(week.toEpochMilli())))
+        .andExpect(jsonPath("$[0].endTime", is(week.plus(Duration.ofDays(1)).toEpochMilli())))
+        .andExpect(jsonPath("$[1].count", is(1000)));
+
+    // The lower bound gets aligned to the start of its bucket
+    this.mockMvc.perform(MockMvcRequestBuilders.get(ENDPOINT_STEPCOUNTS)
+        .param("type", StepCountRollupType.WEEKLY.name())
+        .param("from", String.valueOf(week.plus(Duration.ofDays(2)).toEpochMilli()))
+        .param("to", String.valueOf(week.plus(Duration.ofDays(7)).toEpochMilli()))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(1)))
+        .andExpect(jsonPath("$[0].type", is(StepCountRollupType.WEEKLY.name())))
+        .andExpect(jsonPath("$[0].count", is(3450)))
+        .andExpect(jsonPath("$[0].startTime", is(week.toEpochMilli())));
+
+    this.mockMvc.perform(MockMvcRequestBuilders.get(ENDPOINT_STEPCOUNTS)
+        .param("type", StepCountRollupType.WEEKLY.name())
+        .param("from", String.valueOf(week.minus(Duration.ofDays(7)).toEpochMilli()))
+        .param("to", String.valueOf(week.toEpochMilli()))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(1)))
+        .andExpect(jsonPath("$[0].count", is(7)));
+
+    // Test invalid range
+    this.mockMvc.perform(MockMvcRequestBuilders.get(ENDPOINT_STEPCOUNTS)
+        .param("type", StepCountRollupType.DAILY.name())
+        .param("from", String.valueOf(week.toEpochMilli()))
+        .param("to", String.valueOf(week.minus(Duration.ofDays(1)).toEpochMilli()))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token))
+        .andExpect(status().isBadRequest());
+
+    // Test range exceeding the maximum number of buckets
+    this.mockMvc.perform(MockMvcRequestBuilders.get(ENDPOINT_STEPCOUNTS)
+        .param("type", StepCountRollupType.DAILY.name())
+        .param("from", String.valueOf(week.toEpochMilli()))
+        .param("to", String.valueOf(week.plus(Duration.ofDays(367)).toEpochMilli()))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token))
+        .andExpect(status().isBadRequest());
+
+    this.mockMvc.perform(MockMvcRequestBuilders.get(ENDPOINT_STEPCOUNTS)
+        .param("type", StepCountRollupType.WEEKLY.name())
+        .param("from", String.valueOf(week.toEpochMilli()))
+        .param("to", String.valueOf(week.plus(Duration.ofDays(367)).toEpochMilli()))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token))
+        .andExpect(status().isOk());
+  }
+
+  private static StepCountDto createStepCount(final Instant start, final Duration duration, final int count) {
+    return StepCountDto.builder()
+        .count(count)
+        .startTime(start.toEpochMilli())
+        .endTime(start.plus(duration).toEpochMilli())
+        .build();
+  }
+
+  private void assertStepCount(final Instant start, final int expectedCount, final int expectedVersion) {
+
+    final Optional<StepCount> stepCountOp = this.stepCountRepository.findByUserAndStartTimeAndEndTime(this.user,
+        start, start.plus(Duration.ofHours(1)));
+
+    assertThat(stepCountOp.isPresent(), is(true));
+    assertThat(stepCountOp.get().getStepCount(), is(expectedCount));
+    assertThat(stepCountOp.get().getVersion(), is(expectedVersion));
+  }
 }
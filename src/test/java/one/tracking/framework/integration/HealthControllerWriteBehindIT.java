@@ -0,0 +1,178 @@
+/**
+ *
+ */
+package one.tracking.framework.integration;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import one.tracking.framework.SurveyApplication;
+import one.tracking.framework.component.StepCountWriteBehindComponent;
+import one.tracking.framework.dto.StepCountDto;
+import one.tracking.framework.entity.User;
+import one.tracking.framework.entity.health.StepCount;
+import one.tracking.framework.repo.StepCountRepository;
+import one.tracking.framework.support.JWTHelper;
+
+/**
+ * @author Marko Voß
+ *
+ */
+@AutoConfigureMockMvc
+@TestPropertySource(locations = "classpath:application-it.properties", properties = {
+    "app.health.stepcounts.writeBehind.enable=true",
+    "app.health.stepcounts.writeBehind.capacity=10"})
+@Import(ITConfiguration.class)
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = SurveyApplication.class)
+@DirtiesContext
+public class HealthControllerWriteBehindIT {
+
+  private static final String ENDPOINT_HEALTH = "/health";
+  private static final String ENDPOINT_STEPCOUNT = ENDPOINT_HEALTH + "/stepcount";
+  private static final String ENDPOINT_STEPCOUNTS = ENDPOINT_HEALTH + "/stepcounts";
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private ObjectMapper mapper;
+
+  @Autowired
+  private StepCountRepository stepCountRepository;
+
+  @Autowired
+  private StepCountWriteBehindComponent stepCountWriteBehindComponent;
+
+  @Autowired
+  private HelperBean helperBean;
+
+  @Autowired
+  private JWTHelper jwtHelper;
+
+  private User user;
+
+  private String token;
+
+  @Before
+  public void before() {
+    this.user = this.helperBean.createUser("test");
+    this.token = this.jwtHelper.createJWT(this.user.getId(), 24 * 60 * 60);
+  }
+
+  @Test
+  public void testWriteBehind() throws Exception {
+
+    final Instant day = Instant.parse("2020-05-01T00:00:00Z");
+
+    // Test invalid step counts are rejected before being queued
+    this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_STEPCOUNTS)
+        .with(csrf())
+        .content(this.mapper.writeValueAsBytes(Arrays.asList(
+            createStepCount(day, Duration.ofHours(1), 100),
+            createStepCount(day.plus(Duration.ofHours(2)), Duration.ofHours(-1), 100))))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isBadRequest());
+
+    // Test more step counts than the capacity of the queue
+    final List<StepCountDto> stepCounts = new ArrayList<>();
+    for (int hour = 0; hour < 11; hour++) {
+      stepCounts.add(createStepCount(day.plus(Duration.ofHours(hour)), Duration.ofHours(1), 100 + hour));
+    }
+
+    this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_STEPCOUNTS)
+        .with(csrf())
+        .content(this.mapper.writeValueAsBytes(stepCounts))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isTooManyRequests());
+
+    assertThat(this.stepCountWriteBehindComponent.size(), is(0));
+
+    // Duplicate intervals do not take additional capacity
+    stepCounts.set(10, createStepCount(day, Duration.ofHours(1), 1000));
+
+    this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_STEPCOUNTS)
+        .with(csrf())
+        .content(this.mapper.writeValueAsBytes(stepCounts))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk());
+
+    this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_STEPCOUNT)
+        .with(csrf())
+        .content(this.mapper.writeValueAsBytes(createStepCount(day.plus(Duration.ofHours(1)), Duration.ofHours(1),
+            5000)))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk());
+
+    awaitStepCount(day.plus(Duration.ofHours(1)), 5000);
+    awaitStepCount(day, 1000);
+    awaitStepCount(day.plus(Duration.ofHours(9)), 109);
+
+    // Test step counts are rejected once the queue got stopped
+    this.stepCountWriteBehindComponent.stop();
+
+    this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_STEPCOUNT)
+        .with(csrf())
+        .content(this.mapper.writeValueAsBytes(createStepCount(day, Duration.ofHours(1), 2000)))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isTooManyRequests());
+
+    assertThat(this.stepCountWriteBehindComponent.size(), is(0));
+    assertThat(this.stepCountWriteBehindComponent.getDiscarded(), is(0L));
+  }
+
+  private static StepCountDto createStepCount(final Instant start, final Duration duration, final int count) {
+    return StepCountDto.builder()
+        .count(count)
+        .startTime(start.toEpochMilli())
+        .endTime(start.plus(duration).toEpochMilli())
+        .build();
+  }
+
+  private void awaitStepCount(final Instant start, final int expectedCount) throws InterruptedException {
+
+    final Instant timeout = Instant.now().plusSeconds(10);
+    Optional<StepCount> stepCountOp;
+
+    do {
+      stepCountOp = this.stepCountRepository.findByUserAndStartTimeAndEndTime(this.user, start,
+          start.plus(Duration.ofHours(1)));
+
+      if (stepCountOp.isPresent() && stepCountOp.get().getStepCount() == expectedCount)
+        return;
+
+      Thread.sleep(50);
+
+    } while (Instant.now().isBefore(timeout));
+
+    assertThat(stepCountOp.isPresent(), is(true));
+    assertThat(stepCountOp.get().getStepCount(), is(expectedCount));
+  }
+}
@@ -12,14 +12,26 @@ import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -30,6 +42,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.annotation.DirtiesContext.ClassMode;
@@ -38,12 +51,20 @@ import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import one.tracking.framework.SurveyApplication;
+import one.tracking.framework.component.SurveyGraphComponent;
+import one.tracking.framework.component.SurveyInstanceComponent;
+import one.tracking.framework.domain.SurveyGraph;
 import one.tracking.framework.domain.SurveyStatusType;
+import one.tracking.framework.dto.DtoMapper;
 import one.tracking.framework.dto.SurveyResponseConflictDto;
 import one.tracking.framework.dto.SurveyResponseConflictType;
 import one.tracking.framework.dto.SurveyResponseDto;
+import one.tracking.framework.dto.SurveyResponseResultDto;
 import one.tracking.framework.dto.SurveyStatusDto;
 import one.tracking.framework.dto.meta.SurveyDto;
 import one.tracking.framework.dto.meta.question.BooleanQuestionDto;
@@ -54,6 +75,16 @@ import one.tracking.framework.dto.meta.question.NumberQuestionDto;
 import one.tracking.framework.dto.meta.question.QuestionDto;
 import one.tracking.framework.dto.meta.question.RangeQuestionDto;
 import one.tracking.framework.dto.meta.question.TextQuestionDto;
+import one.tracking.framework.entity.SurveyInstance;
+import one.tracking.framework.entity.SurveyProgress;
+import one.tracking.framework.entity.SurveyResponse;
+import one.tracking.framework.entity.User;
+import one.tracking.framework.entity.meta.Answer;
+import one.tracking.framework.entity.meta.ReleaseStatusType;
+import one.tracking.framework.entity.meta.Survey;
+import one.tracking.framework.repo.SurveyProgressRepository;
+import one.tracking.framework.repo.SurveyRepository;
+import one.tracking.framework.repo.SurveyResponseRepository;
 import one.tracking.framework.support.JWTHelper;
 
 /**
@@ -80,6 +111,7 @@ public class SurveyIT {
   private static final String ENDPOINT_SURVEY = "/survey";
   private static final String ENDPOINT_SURVEY_TEST = ENDPOINT_SURVEY + "/TEST";
   private static final String ENDPOINT_SURVEY_TEST_ANSWER = ENDPOINT_SURVEY_TEST + "/answer";
+  private static final String ENDPOINT_SURVEY_TEST_ANSWERS = ENDPOINT_SURVEY_TEST + "/answers";
 
   @Autowired
   private MockMvc mockMvc;
@@ -93,11 +125,35 @@ public class SurveyIT {
   @Autowired
   private HelperBean helperBean;
 
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  private SurveyRepository surveyRepository;
+
+  @Autowired
+  private SurveyGraphComponent surveyGraphComponent;
+
+  @Autowired
+  private SurveyInstanceComponent surveyInstanceComponent;
+
+  @Autowired
+  private SurveyResponseRepository surveyResponseRepository;
+
+  @Autowired
+  private SurveyProgressRepository surveyProgressRepository;
+
+  private User user;
+
   private String token;
 
   @Before
   public void beforeEach() {
-    this.token = this.jwtHelper.createJWT(this.helperBean.createUser("test").getId(), 24 * 60 * 60);
+    this.user = this.helperBean.createUser("test");
+    this.token = this.jwtHelper.createJWT(this.user.getId(), 24 * 60 * 60);
   }
 
   @Test
@@ -137,6 +193,34 @@ public class SurveyIT {
     assertThat(survey.getDescription(), is("DESCRIPTION"));
     assertThat(survey.getQuestions().size(), is(11));
 
+    final MvcResult gzipResult = this.mockMvc.perform(MockMvcRequestBuilders.get(ENDPOINT_SURVEY_TEST)
+        .with(csrf())
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate")
+        .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andReturn();
+
+    assertThat(gzipResult.getResponse().getHeader(HttpHeaders.CONTENT_ENCODING), is("gzip"));
+
+    try (GZIPInputStream in =
+        new GZIPInputStream(new ByteArrayInputStream(gzipResult.getResponse().getContentAsByteArray()))) {
+      assertThat(in.readAllBytes(), is(result.getResponse().getContentAsByteArray()));
+    }
+
+    // The streamed definition equals the serialized DTO using the inclusion of the application
+    final ObjectMapper nonAbsentMapper = this.mapper.copy().setSerializationInclusion(Include.NON_ABSENT);
+    final String mapped = this.transactionTemplate.execute(status -> {
+      try {
+        return nonAbsentMapper.writeValueAsString(DtoMapper.map(this.surveyRepository
+            .findTopByNameIdAndReleaseStatusOrderByVersionDesc("TEST", ReleaseStatusType.RELEASED).get()));
+      } catch (final JsonProcessingException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+
+    assertThat(this.mapper.readTree(result.getResponse().getContentAsByteArray()), is(this.mapper.readTree(mapped)));
+
     performSurvey(survey, token);
     // redo the survey
     performSurvey(survey, token);
@@ -186,6 +270,11 @@ public class SurveyIT {
 
     assertThat(status.getStatus(), is(expectedStatus));
     assertThat(status.getDependsOn(), is(expectedDependsOnNameId));
+
+    if (expectedStatus == SurveyStatusType.COMPLETED)
+      assertThat(status.getCountAnswered(), is(status.getCountQuestions()));
+    else
+      assertThat(status.getCountAnswered() < status.getCountQuestions(), is(true));
     assertThat(status.getToken(), is(not(nullValue())));
 
     return status.getToken();
@@ -415,6 +504,9 @@ public class SurveyIT {
     assertThat(choiceQuestion.getAnswers().get(2), is(not(nullValue())));
     assertThat(choiceQuestion.getAnswers().get(2).getValue(), is("Q4A3"));
 
+    final Statistics statistics = this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+
     this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_SURVEY_TEST_ANSWER)
         .with(csrf())
         .content(this.mapper.writeValueAsBytes(SurveyResponseDto.builder()
@@ -428,6 +520,10 @@ public class SurveyIT {
         .contentType(MediaType.APPLICATION_JSON))
         .andExpect(status().isOk());
 
+    // Selected answers must be resolved without querying each answer
+    assertThat(statistics.getEntityStatistics(Answer.class.getName()).getLoadCount(), is(0L));
+    assertThat(statistics.getEntityStatistics(Answer.class.getName()).getFetchCount(), is(0L));
+
     nextQuestion = getQuestion(survey.getQuestions(), "Q5");
     assertThat(nextQuestion, is(not(nullValue())));
     assertThat(nextQuestion.getQuestion(), is("Q5"));
@@ -1138,6 +1234,428 @@ public class SurveyIT {
         .andExpect(status().isOk());
   }
 
+  @Test
+  public void testSurveyOverviewQueryCount() throws Exception {
+
+    this.helperBean.createSimpleSurvey("A", false);
+
+    final long countSingle = countOverviewStatements(1);
+
+    this.helperBean.createSimpleSurvey("B", true);
+    this.helperBean.createSimpleSurvey("C", false);
+
+    final long countMultiple = countOverviewStatements(3);
+
+    // The number of queries must not depend on the number of surveys
+    assertThat(countMultiple, is(countSingle));
+  }
+
+  private long countOverviewStatements(final int expectedSize) throws Exception {
+
+    // Compile the survey graphs and create the survey instances upfront
+    this.mockMvc.perform(MockMvcRequestBuilders.get(ENDPOINT_OVERVIEW)
+        .with(csrf())
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk());
+
+    final Statistics statistics = this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+
+    final MvcResult result = this.mockMvc.perform(MockMvcRequestBuilders.get(ENDPOINT_OVERVIEW)
+        .with(csrf())
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andReturn();
+
+    final long count = statistics.getPrepareStatementCount();
+
+    final List<SurveyStatusDto> statusList = this.mapper.readValue(result.getResponse().getContentAsByteArray(),
+        this.mapper.getTypeFactory().constructCollectionType(List.class, SurveyStatusDto.class));
+
+    assertThat(statusList.size(), is(expectedSize));
+
+    return count;
+  }
+
+  @Test
+  public void testSurveyResponseBatch() throws Exception {
+
+    this.helperBean.createSurvey("TEST");
+
+    final String surveyToken = testOverview(SurveyStatusType.INCOMPLETE, null);
+
+    final MvcResult surveyResult = this.mockMvc.perform(MockMvcRequestBuilders.get(ENDPOINT_SURVEY_TEST)
+        .with(csrf())
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andReturn();
+
+    final SurveyDto survey =
+        this.mapper.readValue(surveyResult.getResponse().getContentAsByteArray(), SurveyDto.class);
+
+    final QuestionDto q1 = getQuestion(survey.getQuestions(), "Q1");
+    final QuestionDto q2 = getQuestion(survey.getQuestions(), "Q2");
+    final QuestionDto q2c1 = getQuestion(survey.getQuestions(), "Q2C1");
+
+    this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_SURVEY_TEST_ANSWERS)
+        .with(csrf())
+        .content(this.mapper.writeValueAsBytes(Collections.emptyList()))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isBadRequest());
+
+    final MvcResult result = this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_SURVEY_TEST_ANSWERS)
+        .with(csrf())
+        .content(this.mapper.writeValueAsBytes(Arrays.asList(
+            SurveyResponseDto.builder()
+                .questionId(q1.getId())
+                .boolAnswer(true)
+                .surveyToken(surveyToken)
+                .build(),
+            // Missing survey token
+            SurveyResponseDto.builder()
+                .questionId(q1.getId())
+                .boolAnswer(true)
+                .build(),
+            SurveyResponseDto.builder()
+                .questionId(q2.getId())
+                .boolAnswer(true)
+                .surveyToken("INVALID")
+                .build(),
+            // Invalid answer type
+            SurveyResponseDto.builder()
+                .questionId(q2.getId())
+                .numberAnswer(1)
+                .surveyToken(surveyToken)
+                .build(),
+            SurveyResponseDto.builder()
+                .questionId(q2.getId())
+                .boolAnswer(true)
+                .surveyToken(surveyToken)
+                .build())))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andReturn();
+
+    final List<SurveyResponseResultDto> results = this.mapper.readValue(result.getResponse().getContentAsByteArray(),
+        this.mapper.getTypeFactory().constructCollectionType(List.class, SurveyResponseResultDto.class));
+
+    assertThat(results.size(), is(5));
+
+    assertThat(results.get(0).getQuestionId(), is(q1.getId()));
+    assertThat(results.get(0).isAccepted(), is(true));
+    assertThat(results.get(0).getConflictType(), is(nullValue()));
+
+    assertThat(results.get(1).isAccepted(), is(false));
+    assertThat(results.get(1).getConflictType(), is(nullValue()));
+    assertThat(results.get(1).getError(), is(not(nullValue())));
+
+    assertThat(results.get(2).isAccepted(), is(false));
+    assertThat(results.get(2).getConflictType(), is(SurveyResponseConflictType.INVALID_SURVEY_TOKEN));
+
+    assertThat(results.get(3).isAccepted(), is(false));
+    assertThat(results.get(3).getConflictType(), is(nullValue()));
+    assertThat(results.get(3).getError(), is(not(nullValue())));
+
+    assertThat(results.get(4).getQuestionId(), is(q2.getId()));
+    assertThat(results.get(4).isAccepted(), is(true));
+
+    // The status reflects the last accepted response only
+    testOverview(SurveyStatusType.INCOMPLETE, q2c1.getId());
+  }
+
+  @Test
+  public void testSurveyProgressWithChecklist() throws Exception {
+
+    final Survey testSurvey = this.helperBean.createSurvey("TEST");
+
+    final String surveyToken = testOverview(SurveyStatusType.INCOMPLETE, null);
+
+    final MvcResult surveyResult = this.mockMvc.perform(MockMvcRequestBuilders.get(ENDPOINT_SURVEY_TEST)
+        .with(csrf())
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andReturn();
+
+    final SurveyDto survey =
+        this.mapper.readValue(surveyResult.getResponse().getContentAsByteArray(), SurveyDto.class);
+
+    final QuestionDto q1 = getQuestion(survey.getQuestions(), "Q1");
+    final ChoiceQuestionDto q3 = (ChoiceQuestionDto) getQuestion(survey.getQuestions(), "Q3");
+    final ChoiceQuestionDto q4 = (ChoiceQuestionDto) getQuestion(survey.getQuestions(), "Q4");
+    final ChecklistQuestionDto q7 = (ChecklistQuestionDto) getQuestion(survey.getQuestions(), "Q7");
+
+    final Map<Long, Boolean> checklist = new HashMap<>();
+    checklist.put(q7.getEntries().get(0).getId(), true);
+
+    // Answer questions before and including the checklist
+    this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_SURVEY_TEST_ANSWERS)
+        .with(csrf())
+        .content(this.mapper.writeValueAsBytes(Arrays.asList(
+            SurveyResponseDto.builder()
+                .questionId(q1.getId())
+                .boolAnswer(true)
+                .surveyToken(surveyToken)
+                .build(),
+            SurveyResponseDto.builder()
+                .questionId(q3.getId())
+                .answerIds(Collections.singletonList(q3.getAnswers().get(0).getId()))
+                .surveyToken(surveyToken)
+                .build(),
+            SurveyResponseDto.builder()
+                .questionId(q4.getId())
+                .answerIds(Collections.singletonList(q4.getAnswers().get(0).getId()))
+                .surveyToken(surveyToken)
+                .build(),
+            SurveyResponseDto.builder()
+                .questionId(q7.getId())
+                .checklistAnswer(checklist)
+                .surveyToken(surveyToken)
+                .build())))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk());
+
+    assertProgress(testSurvey);
+
+    // Re-answering an earlier question must not reset the progress of the checklist
+    this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_SURVEY_TEST_ANSWER)
+        .with(csrf())
+        .content(this.mapper.writeValueAsBytes(SurveyResponseDto.builder()
+            .questionId(q1.getId())
+            .boolAnswer(false)
+            .surveyToken(surveyToken)
+            .build()))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk());
+
+    assertProgress(testSurvey);
+  }
+
+  @Test
+  public void testConcurrentFirstResponses() throws Exception {
+
+    final Survey testSurvey = this.helperBean.createSurvey("TEST");
+
+    final String surveyToken = testOverview(SurveyStatusType.INCOMPLETE, null);
+
+    final MvcResult surveyResult = this.mockMvc.perform(MockMvcRequestBuilders.get(ENDPOINT_SURVEY_TEST)
+        .with(csrf())
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andReturn();
+
+    final SurveyDto survey =
+        this.mapper.readValue(surveyResult.getResponse().getContentAsByteArray(), SurveyDto.class);
+
+    final List<SurveyResponseDto> surveyResponses = Arrays.asList(
+        SurveyResponseDto.builder()
+            .questionId(getQuestion(survey.getQuestions(), "Q1").getId())
+            .boolAnswer(true)
+            .surveyToken(surveyToken)
+            .build(),
+        SurveyResponseDto.builder()
+            .questionId(getQuestion(survey.getQuestions(), "Q2").getId())
+            .boolAnswer(true)
+            .surveyToken(surveyToken)
+            .build());
+
+    // Store the first responses of the survey instance at the same time
+    final ExecutorService executor = Executors.newFixedThreadPool(surveyResponses.size());
+    final CountDownLatch start = new CountDownLatch(1);
+
+    try {
+
+      final List<Future<Integer>> results = new ArrayList<>();
+
+      for (final SurveyResponseDto surveyResponse : surveyResponses) {
+        results.add(executor.submit(() -> {
+          start.await();
+          return this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_SURVEY_TEST_ANSWER)
+              .with(csrf())
+              .content(this.mapper.writeValueAsBytes(surveyResponse))
+              .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+              .contentType(MediaType.APPLICATION_JSON))
+              .andReturn().getResponse().getStatus();
+        }));
+      }
+
+      start.countDown();
+
+      for (final Future<Integer> result : results) {
+        assertThat(result.get(30, TimeUnit.SECONDS), is(HttpStatus.OK.value()));
+      }
+
+    } finally {
+      executor.shutdownNow();
+    }
+
+    this.transactionTemplate.executeWithoutResult(transaction -> {
+
+      final SurveyInstance instance = this.surveyInstanceComponent.getCurrentInstance(testSurvey);
+
+      final List<SurveyResponse> responses =
+          this.surveyResponseRepository.findByUserAndSurveyInstanceAndMaxVersion(this.user, instance);
+
+      // Each response got its own version
+      assertThat(responses.size(), is(2));
+      assertThat(responses.stream().map(SurveyResponse::getVersion).distinct().count(), is(2L));
+    });
+
+    // Fails if more than one status and progress have been created
+    assertProgress(testSurvey);
+  }
+
+  /**
+   * Asserts that the materialized progress equals the progress computed from the stored responses.
+   */
+  private void assertProgress(final Survey survey) {
+
+    this.transactionTemplate.executeWithoutResult(transaction -> {
+
+      final SurveyGraph graph = this.surveyGraphComponent.getGraph(survey);
+      final SurveyInstance instance = this.surveyInstanceComponent.getCurrentInstance(survey);
+
+      final BitSet answered = graph.getAnswered(
+          this.surveyResponseRepository.findByUserAndSurveyInstanceAndMaxVersion(this.user, instance));
+
+      final SurveyProgress progress =
+          this.surveyProgressRepository.findByUserAndSurveyInstance(this.user, instance).get();
+
+      assertThat(BitSet.valueOf(progress.getAnswered()), is(answered));
+      assertThat(progress.getCountAnswered(), is(answered.cardinality()));
+      assertThat(progress.getStatus(), is(graph.calculateStatus(answered)));
+    });
+  }
+
+  @Test
+  public void testConditionalRequests() throws Exception {
+
+    this.helperBean.createSurvey("TEST");
+
+    final MvcResult overviewResult = this.mockMvc.perform(MockMvcRequestBuilders.get(ENDPOINT_OVERVIEW)
+        .with(csrf())
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andReturn();
+
+    final String overviewTag = overviewResult.getResponse().getHeader(HttpHeaders.ETAG);
+    assertThat(overviewTag, is(not(nullValue())));
+
+    final List<SurveyStatusDto> statusList =
+        this.mapper.readValue(overviewResult.getResponse().getContentAsByteArray(),
+            this.mapper.getTypeFactory().constructCollectionType(List.class, SurveyStatusDto.class));
+
+    final Statistics statistics = this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+
+    this.mockMvc.perform(MockMvcRequestBuilders.get(ENDPOINT_OVERVIEW)
+        .with(csrf())
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .header(HttpHeaders.IF_NONE_MATCH, overviewTag)
+        .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isNotModified());
+
+    final long countNotModified = statistics.getPrepareStatementCount();
+    statistics.clear();
+
+    this.mockMvc.perform(MockMvcRequestBuilders.get(ENDPOINT_OVERVIEW)
+        .with(csrf())
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk());
+
+    // The overview is not read if it has not been modified
+    assertThat(countNotModified < statistics.getPrepareStatementCount(), is(true));
+
+    final MvcResult surveyResult = this.mockMvc.perform(MockMvcRequestBuilders.get(ENDPOINT_SURVEY_TEST)
+        .with(csrf())
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andReturn();
+
+    final String surveyTag = surveyResult.getResponse().getHeader(HttpHeaders.ETAG);
+    assertThat(surveyTag, is(not(nullValue())));
+    assertThat(surveyResult.getResponse().getHeader(HttpHeaders.LAST_MODIFIED), is(not(nullValue())));
+
+    final MvcResult notModifiedResult = this.mockMvc.perform(MockMvcRequestBuilders.get(ENDPOINT_SURVEY_TEST)
+        .with(csrf())
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .header(HttpHeaders.IF_NONE_MATCH, surveyTag)
+        .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isNotModified())
+        .andReturn();
+
+    assertThat(notModifiedResult.getResponse().getContentAsByteArray().length, is(0));
+    assertThat(notModifiedResult.getResponse().getHeader(HttpHeaders.VARY), is(HttpHeaders.ACCEPT_ENCODING));
+
+    // The gzip encoded representation has a tag of its own
+    final MvcResult gzipResult = this.mockMvc.perform(MockMvcRequestBuilders.get(ENDPOINT_SURVEY_TEST)
+        .with(csrf())
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+        .header(HttpHeaders.IF_NONE_MATCH, surveyTag)
+        .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andReturn();
+
+    final String gzipTag = gzipResult.getResponse().getHeader(HttpHeaders.ETAG);
+    assertThat(gzipTag, is(not(nullValue())));
+    assertThat(gzipTag, is(not(surveyTag)));
+    assertThat(gzipResult.getResponse().getHeader(HttpHeaders.LAST_MODIFIED),
+        is(surveyResult.getResponse().getHeader(HttpHeaders.LAST_MODIFIED)));
+
+    this.mockMvc.perform(MockMvcRequestBuilders.get(ENDPOINT_SURVEY_TEST)
+        .with(csrf())
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+        .header(HttpHeaders.IF_NONE_MATCH, gzipTag)
+        .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isNotModified());
+
+    final SurveyDto survey =
+        this.mapper.readValue(surveyResult.getResponse().getContentAsByteArray(), SurveyDto.class);
+
+    this.mockMvc.perform(MockMvcRequestBuilders.post(ENDPOINT_SURVEY_TEST_ANSWER)
+        .with(csrf())
+        .content(this.mapper.writeValueAsBytes(SurveyResponseDto.builder()
+            .questionId(getQuestion(survey.getQuestions(), "Q1").getId())
+            .boolAnswer(true)
+            .surveyToken(statusList.get(0).getToken())
+            .build()))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk());
+
+    // The status has changed
+    final MvcResult modifiedResult = this.mockMvc.perform(MockMvcRequestBuilders.get(ENDPOINT_OVERVIEW)
+        .with(csrf())
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .header(HttpHeaders.IF_NONE_MATCH, overviewTag)
+        .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andReturn();
+
+    assertThat(modifiedResult.getResponse().getHeader(HttpHeaders.ETAG), is(not(overviewTag)));
+
+    // The survey definition has not changed
+    this.mockMvc.perform(MockMvcRequestBuilders.get(ENDPOINT_SURVEY_TEST)
+        .with(csrf())
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + this.token)
+        .header(HttpHeaders.IF_NONE_MATCH, surveyTag)
+        .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isNotModified());
+  }
+
   /**
    * Generates a {@link String} of the specified length.
    *